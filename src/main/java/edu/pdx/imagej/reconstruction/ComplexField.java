@@ -57,6 +57,16 @@ public interface ComplexField {
      * @return A reference to the data representing this ComplexField.
      */
     double[][] getField();
+    /** Get a reference to the data without it counting as a change.  This is
+     * a non-modifying operation, so <strong>the result must not be
+     * modified</strong>.  It is in the same format as {@link getField}.
+     * <p>
+     * By default, this is just {@link getField}, so implementations that keep
+     * track of changes should override it.
+     *
+     * @return A reference to the data representing this ComplexField.
+     */
+    default double[][] viewField() {return getField();}
     /** Set the data for this ComplexField.  This is a modifying operation.
      *
      * @param field The new data to represent this ComplexField.
@@ -175,6 +185,35 @@ public interface ComplexField {
      *              the return value of {@link getField}.
      */
     void divideInPlace(double[][] other);
+    /** Multiply this ComplexField by the outer product of two complex
+     * vectors.  This is a modifying operation.  The value at (x, y) is
+     * multiplied by <code>columns[x] * rows[y]</code>.
+     * <p>
+     * By default, this makes the whole product and uses {@link
+     * multiplyInPlace(double[][])}.  Implementations should override it if
+     * they can do it without making the product, like {@link
+     * ReconstructionComplexField} does.
+     *
+     * @param columns The complex value for each x, real then imaginary, so it
+     *                is twice as long as the width.
+     * @param rows The complex value for each y, real then imaginary, so it is
+     *             twice as long as the height.
+     */
+    default void multiplySeparableInPlace(double[] columns, double[] rows)
+    {
+        final int w = width();
+        final int h = height();
+        double[][] product = new double[w][h * 2];
+        for (int x = 0; x < w; ++x) {
+            final double c = columns[2*x];
+            final double d = columns[2*x+1];
+            for (int y = 0; y < h; ++y) {
+                product[x][2*y] = rows[2*y] * c - rows[2*y+1] * d;
+                product[x][2*y+1] = rows[2*y] * d + rows[2*y+1] * c;
+            }
+        }
+        multiplyInPlace(product);
+    }
     /** Add a single value to this ComplexField.  This is a modifying operation.
      * The result is (a + c) + (b + d)i, with c = real and d = imag.
      *
@@ -0,0 +1,195 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction;
+
+// The innermost loops of ReconstructionComplexField, done on one column of a
+// field at a time.  Each column is a single interleaved array, real then
+// imaginary.
+//
+// The loops themselves are in a Kernels.  Scalar does them one pixel at a
+// time, and works everywhere.  VectorComplexKernels does them with the
+// jdk.incubator.vector API, and is only compiled when building with Java 17
+// or later (see the vector profile in the pom).  It is loaded by reflection
+// the first time this class is used, and is only used if it loads, which
+// needs Java 17 or later started with --add-modules jdk.incubator.vector.
+// Otherwise, Scalar is used.  Both give exactly the same values as doing the
+// arithmetic one pixel at a time, except that arg is always scalar, because
+// the vector atan2 isn't guaranteed to match Math.atan2.
+final class ComplexKernels {
+    // column *= other, where both are interleaved
+    static void multiply(double[] column, double[] other)
+    {
+        SC_kernels.multiply(column, other);
+    }
+    // column *= c + di
+    static void multiply(double[] column, double c, double d)
+    {
+        SC_kernels.multiply(column, c, d);
+    }
+    // column *= other * (c + di), where both are interleaved
+    static void multiply(double[] column, double[] other, double c, double d)
+    {
+        SC_kernels.multiply(column, other, c, d);
+    }
+    // column /= other, where both are interleaved
+    static void divide(double[] column, double[] other)
+    {
+        SC_kernels.divide(column, other);
+    }
+    // column /= c + di
+    static void divide(double[] column, double c, double d)
+    {
+        SC_kernels.divide(column, c, d);
+    }
+    // result = |column|, where result is half as long as column
+    static void amp(double[] column, double[] result)
+    {
+        SC_kernels.amp(column, result);
+    }
+    // result = |column|^2, where result is half as long as column
+    static void amp2(double[] column, double[] result)
+    {
+        SC_kernels.amp2(column, result);
+    }
+    // result = arg(column), where result is half as long as column
+    static void arg(double[] column, double[] result)
+    {
+        SC_kernels.arg(column, result);
+    }
+
+    // One implementation of the loops above
+    interface Kernels {
+        void multiply(double[] column, double[] other);
+        void multiply(double[] column, double c, double d);
+        void multiply(double[] column, double[] other, double c, double d);
+        void divide(double[] column, double[] other);
+        void divide(double[] column, double c, double d);
+        void amp(double[] column, double[] result);
+        void amp2(double[] column, double[] result);
+        void arg(double[] column, double[] result);
+    }
+    // The loops done one pixel at a time
+    static class Scalar implements Kernels {
+        @Override public void multiply(double[] column, double[] other)
+        {
+            final int length = column.length & ~1;
+            for (int i = 0; i < length; i += 2) {
+                final double a = column[i];
+                final double b = column[i + 1];
+                final double c = other[i];
+                final double d = other[i + 1];
+                column[i] = a * c - b * d;
+                column[i + 1] = a * d + b * c;
+            }
+        }
+        @Override public void multiply(double[] column, double c, double d)
+        {
+            final int length = column.length & ~1;
+            for (int i = 0; i < length; i += 2) {
+                final double a = column[i];
+                final double b = column[i + 1];
+                column[i] = a * c - b * d;
+                column[i + 1] = a * d + b * c;
+            }
+        }
+        @Override public void multiply(double[] column, double[] other,
+                                       double c, double d)
+        {
+            final int length = column.length & ~1;
+            for (int i = 0; i < length; i += 2) {
+                final double a = column[i];
+                final double b = column[i + 1];
+                final double e = other[i] * c - other[i + 1] * d;
+                final double f = other[i] * d + other[i + 1] * c;
+                column[i] = a * e - b * f;
+                column[i + 1] = a * f + b * e;
+            }
+        }
+        @Override public void divide(double[] column, double[] other)
+        {
+            final int length = column.length & ~1;
+            for (int i = 0; i < length; i += 2) {
+                final double a = column[i];
+                final double b = column[i + 1];
+                final double c = other[i];
+                final double d = other[i + 1];
+                final double denom = c*c + d*d;
+                column[i] = (a * c + b * d) / denom;
+                column[i + 1] = (b * c - a * d) / denom;
+            }
+        }
+        @Override public void divide(double[] column, double c, double d)
+        {
+            final double denom = c*c + d*d;
+            final int length = column.length & ~1;
+            for (int i = 0; i < length; i += 2) {
+                final double a = column[i];
+                final double b = column[i + 1];
+                column[i] = (a * c + b * d) / denom;
+                column[i + 1] = (b * c - a * d) / denom;
+            }
+        }
+        @Override public void amp(double[] column, double[] result)
+        {
+            for (int y = 0; y < result.length; ++y) {
+                final double r = column[2 * y];
+                final double i = column[2 * y + 1];
+                result[y] = Math.sqrt(r*r + i*i);
+            }
+        }
+        @Override public void amp2(double[] column, double[] result)
+        {
+            for (int y = 0; y < result.length; ++y) {
+                final double r = column[2 * y];
+                final double i = column[2 * y + 1];
+                result[y] = r*r + i*i;
+            }
+        }
+        @Override public void arg(double[] column, double[] result)
+        {
+            for (int y = 0; y < result.length; ++y) {
+                result[y] = Math.atan2(column[2 * y + 1], column[2 * y]);
+            }
+        }
+    }
+    // The vector kernels, or null if they can't be used here
+    static Kernels vector()
+    {
+        try {
+            return (Kernels)Class.forName(
+                    "edu.pdx.imagej.reconstruction.VectorComplexKernels")
+                .getDeclaredConstructor().newInstance();
+        }
+        // The class isn't there, it was compiled for a newer Java, the
+        // vector module wasn't added, or there is no vector hardware to use
+        catch (ReflectiveOperationException | LinkageError
+               | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static final Kernels SC_kernels;
+    static {
+        Kernels vector = vector();
+        SC_kernels = vector == null ? new Scalar() : vector;
+    }
+
+    private ComplexKernels() {}
+}
@@ -0,0 +1,67 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction;
+
+import java.util.List;
+
+import ij.ImagePlus;
+
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import net.imagej.ops.AbstractOp;
+import net.imagej.ops.Op;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+
+import edu.pdx.imagej.reconstruction.units.DistanceUnitValue;
+import edu.pdx.imagej.reconstruction.plugin.ReconstructionPlugin;
+
+/** The same as {@link ReconstructionOp}, but with the hologram as an ImgLib2
+ * <code>RandomAccessibleInterval</code> instead of an <code>ImagePlus</code>.
+ * <p>
+ * The hologram's first two dimensions are x and y, and its third dimension,
+ * if it has one, is time, so that t = 1 is the first plane along it.  Each
+ * time slice is only read when it is reconstructed, so the hologram doesn't
+ * need to fit in memory.  The parameters are otherwise the same as {@link
+ * ReconstructionOp}, and so is the name, so ImageJ Ops will pick whichever
+ * matches the hologram given.
+ * <p>
+ * To get the result as ImgLib2 images, see {@link
+ * edu.pdx.imagej.reconstruction.result.ResultOptions#imgFunc}.
+ */
+@Plugin(type = Op.class, name = "Hologram Reconstruction")
+public class ImgReconstructionOp<T extends RealType<T>> extends AbstractOp {
+    @Parameter private RandomAccessibleInterval<T> P_hologram;
+    @Parameter private DistanceUnitValue           P_wavelength;
+    @Parameter private DistanceUnitValue           P_width;
+    @Parameter private DistanceUnitValue           P_height;
+    @Parameter private List<Integer>               P_ts;
+    @Parameter private List<DistanceUnitValue>     P_zs;
+    @Parameter private List<ReconstructionPlugin>  P_plugins;
+
+    @Override
+    public void run()
+    {
+        ImagePlus hologram
+            = new ImagePlus("Hologram", new ImgStack<>(P_hologram));
+        ops().run(ReconstructionOp.class, hologram, P_wavelength, P_width,
+                  P_height, P_ts, P_zs, P_plugins);
+    }
+}
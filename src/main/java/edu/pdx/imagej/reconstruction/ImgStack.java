@@ -0,0 +1,109 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction;
+
+import ij.IJ;
+import ij.VirtualStack;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+// A virtual stack over an ImgLib2 image, so that it can be given to plugins
+// that want an ImagePlus.  The first two dimensions are x and y, and the third
+// one, if there is one, is time.  Only the slice that is asked for is read,
+// so the image is never copied all at once.
+class ImgStack<T extends RealType<T>> extends VirtualStack {
+    ImgStack(RandomAccessibleInterval<T> img)
+    {
+        super((int)checkDimensions(img).dimension(0),
+              (int)img.dimension(1), null, null);
+        M_img = img;
+        M_size = img.numDimensions() == 3 ? (int)img.dimension(2) : 1;
+    }
+
+    @Override public ImageProcessor getProcessor(int n)
+    {
+        checkSlice(n);
+        RandomAccessibleInterval<T> slice = M_img;
+        if (M_img.numDimensions() == 3) {
+            slice = Views.hyperSlice(M_img, 2, M_img.min(2) + n - 1);
+        }
+        float[] pixels = new float[getWidth() * getHeight()];
+        Cursor<T> cursor = Views.flatIterable(slice).cursor();
+        for (int i = 0; i < pixels.length; ++i) {
+            pixels[i] = cursor.next().getRealFloat();
+        }
+        return new FloatProcessor(getWidth(), getHeight(), pixels);
+    }
+    @Override public Object getPixels(int n)
+    {
+        return getProcessor(n).getPixels();
+    }
+    @Override public void setPixels(Object pixels, int n)
+    {
+        IJ.error("An ImgLib2 hologram can't be changed.");
+    }
+    @Override public void addSlice(String label, ImageProcessor proc)
+    {
+        IJ.error("Slices can't be added to an ImgLib2 hologram.");
+    }
+    @Override public void addSlice(String label, Object pixels)
+    {
+        IJ.error("Slices can't be added to an ImgLib2 hologram.");
+    }
+    @Override public void deleteSlice(int n)
+    {
+        IJ.error("Slices can't be removed from an ImgLib2 hologram.");
+    }
+    @Override public int getSize() {return M_size;}
+    @Override public String getSliceLabel(int n)
+    {
+        checkSlice(n);
+        return null;
+    }
+    @Override public void setSliceLabel(String label, int n) {}
+    @Override public int getBitDepth() {return 32;}
+    @Override public Object[] getImageArray() {return null;}
+    @Override public String getDirectory() {return null;}
+    @Override public String getFileName(int n) {return null;}
+
+    private static <T> RandomAccessibleInterval<T> checkDimensions(
+        RandomAccessibleInterval<T> img)
+    {
+        if (img.numDimensions() != 2 && img.numDimensions() != 3) {
+            throw new IllegalArgumentException("The hologram must have two "
+                + "or three dimensions, not " + img.numDimensions() + ".");
+        }
+        return img;
+    }
+    private void checkSlice(int n)
+    {
+        if (n < 1 || n > M_size) {
+            throw new IllegalArgumentException("Argument out of range: " + n);
+        }
+    }
+
+    private final RandomAccessibleInterval<T> M_img;
+    private final int M_size;
+}
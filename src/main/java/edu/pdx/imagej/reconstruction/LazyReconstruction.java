@@ -0,0 +1,38 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction;
+
+import edu.pdx.imagej.reconstruction.units.DistanceUnitValue;
+
+/** Something that can reconstruct any single slice on demand.  This is given to
+ * a {@link edu.pdx.imagej.reconstruction.plugin.LazyReconstructionPlugin
+ * LazyReconstructionPlugin} instead of going through every t and z slice.
+ */
+public interface LazyReconstruction {
+    /** Reconstruct one slice.  Every plugin is run on it just as if it were
+     * reconstructed normally.  This may be called from any thread, and in any
+     * order.
+     *
+     * @param t The time slice to reconstruct.
+     * @param z The z value to propagate to.
+     * @return The propagated field.  It belongs to the caller.
+     */
+    ReconstructionField reconstruct(int t, DistanceUnitValue z);
+}
@@ -19,7 +19,15 @@
 
 package edu.pdx.imagej.reconstruction;
 
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
 /** This is the default implementation of {@link ComplexField}.
+ * <p>
+ * Element-wise operations on fields that have at least {@link
+ * getParallelThreshold} values are split by column across the common
+ * fork-join pool.  Smaller fields are done serially, because for them
+ * splitting costs more than it saves.
  */
 public class ReconstructionComplexField implements ComplexField {
     /** Constructor with the field and a (possibly null) {@link
@@ -42,6 +50,30 @@ public class ReconstructionComplexField implements ComplexField {
     {
         M_containing = containing;
     }
+    /** Get the number of complex values at or above which element-wise
+     * operations are done in parallel.
+     *
+     * @return The number of complex values at or above which element-wise
+     *         operations are done in parallel.
+     */
+    public static int getParallelThreshold()
+    {
+        return S_parallelThreshold;
+    }
+    /** Set the number of complex values at or above which element-wise
+     * operations are done in parallel.  This applies to every
+     * <code>ReconstructionComplexField</code>.  Use
+     * <code>Integer.MAX_VALUE</code> to always do them serially, and 0 to
+     * always do them in parallel.
+     *
+     * @param threshold The number of complex values (width times height) at or
+     *                  above which element-wise operations are done in
+     *                  parallel.
+     */
+    public static void setParallelThreshold(int threshold)
+    {
+        S_parallelThreshold = threshold;
+    }
     /** Perform a shift of the data.  As an example, when the width and height
      * are even, the data can be represented as four equally-sized pieces:<br>
      * <code>a b<br>
@@ -98,8 +130,11 @@ public class ReconstructionComplexField implements ComplexField {
         int h = height();
         int w2 = w / 2;
         int h2 = h / 2;
-        double tmp;
-        for (int i = 0; i < w2; i++) {
+        final double[][] field = M_field;
+        // Column i only swaps with column i + w2, so the columns of the left
+        // half can be done independently
+        forEachColumn(w2, h, i -> {
+            double tmp;
             for (int j = 0; j < h2; j++) {
                 int x1 = i;
                 int x2 = i + w2;
@@ -108,21 +143,21 @@ public class ReconstructionComplexField implements ComplexField {
                 int y2r = 2 * (j + h2);
                 int y2i = y2r + 1;
 
-                tmp              = M_field[x1][y1r];
-                M_field[x1][y1r] = M_field[x2][y2r];
-                M_field[x2][y2r] = tmp;
-                tmp              = M_field[x1][y1i];
-                M_field[x1][y1i] = M_field[x2][y2i];
-                M_field[x2][y2i] = tmp;
+                tmp            = field[x1][y1r];
+                field[x1][y1r] = field[x2][y2r];
+                field[x2][y2r] = tmp;
+                tmp            = field[x1][y1i];
+                field[x1][y1i] = field[x2][y2i];
+                field[x2][y2i] = tmp;
 
-                tmp              = M_field[x2][y1r];
-                M_field[x2][y1r] = M_field[x1][y2r];
-                M_field[x1][y2r] = tmp;
-                tmp              = M_field[x2][y1i];
-                M_field[x2][y1i] = M_field[x1][y2i];
-                M_field[x1][y2i] = tmp;
+                tmp            = field[x2][y1r];
+                field[x2][y1r] = field[x1][y2r];
+                field[x1][y2r] = tmp;
+                tmp            = field[x2][y1i];
+                field[x2][y1i] = field[x1][y2i];
+                field[x1][y2i] = tmp;
             }
-        }
+        });
     }
     // Perform the shift when it is odd
     private void shiftOdd(boolean forward)
@@ -135,8 +170,10 @@ public class ReconstructionComplexField implements ComplexField {
         int h2 = h / 2;
         int wp = widthEven ? 0 : 1;
         int hp = heightEven ? 0 : 1;
-        double[][] newField = new double[w][h * 2];
-        for (int i = 0; i < w2 + wp; ++i) {
+        final double[][] field = M_field;
+        final double[][] newField = new double[w][h * 2];
+        // Every i writes to its own part of newField
+        forEachColumn(w2 + wp, h, i -> {
             for (int j = 0; j < h2 + hp; ++j) {
                 // Coord one is on the top left
                 // Coord two is the closer one on the bottom right
@@ -154,49 +191,49 @@ public class ReconstructionComplexField implements ComplexField {
                 // Top left
                 if (forward || (i != w2 && j != h2)) {
                     if (forward) {
-                        newField[x1][y1r] = M_field[x2][y2r];
-                        newField[x1][y1i] = M_field[x2][y2i];
+                        newField[x1][y1r] = field[x2][y2r];
+                        newField[x1][y1i] = field[x2][y2i];
                     }
                     else {
-                        newField[x1][y1r] = M_field[x3][y3r];
-                        newField[x1][y1i] = M_field[x3][y3i];
+                        newField[x1][y1r] = field[x3][y3r];
+                        newField[x1][y1i] = field[x3][y3i];
                     }
                 }
                 // Top right
                 if ((forward && i != w2) || (!forward && j != h2)) {
                     if (forward) {
-                        newField[x3][y1r] = M_field[x1][y2r];
-                        newField[x3][y1i] = M_field[x1][y2i];
+                        newField[x3][y1r] = field[x1][y2r];
+                        newField[x3][y1i] = field[x1][y2i];
                     }
                     else {
-                        newField[x2][y1r] = M_field[x1][y3r];
-                        newField[x2][y1i] = M_field[x1][y3i];
+                        newField[x2][y1r] = field[x1][y3r];
+                        newField[x2][y1i] = field[x1][y3i];
                     }
                 }
                 // Bottom left
                 if ((forward && j != h2) || (!forward && i != w2)) {
                     if (forward) {
-                        newField[x1][y3r] = M_field[x2][y1r];
-                        newField[x1][y3i] = M_field[x2][y1i];
+                        newField[x1][y3r] = field[x2][y1r];
+                        newField[x1][y3i] = field[x2][y1i];
                     }
                     else {
-                        newField[x1][y2r] = M_field[x3][y1r];
-                        newField[x1][y2i] = M_field[x3][y1i];
+                        newField[x1][y2r] = field[x3][y1r];
+                        newField[x1][y2i] = field[x3][y1i];
                     }
                 }
                 // Bottom right
                 if (!forward || (i != w2 && j != h2)) {
                     if (forward) {
-                        newField[x3][y3r] = M_field[x1][y1r];
-                        newField[x3][y3i] = M_field[x1][y1i];
+                        newField[x3][y3r] = field[x1][y1r];
+                        newField[x3][y3i] = field[x1][y1i];
                     }
                     else {
-                        newField[x2][y2r] = M_field[x1][y1r];
-                        newField[x2][y2i] = M_field[x1][y1i];
+                        newField[x2][y2r] = field[x1][y1r];
+                        newField[x2][y2i] = field[x1][y1i];
                     }
                 }
             }
-        }
+        });
         M_field = newField;
     }
 
@@ -206,12 +243,9 @@ public class ReconstructionComplexField implements ComplexField {
         ReconstructionComplexField result = new ReconstructionComplexField();
         int w = width();
         int h = height();
-        result.M_field = new double[w][h * 2];
-        for (int x = 0; x < w; ++x) {
-            for (int y = 0; y < h * 2; ++y) {
-                result.M_field[x][y] = M_field[x][y];
-            }
-        }
+        result.M_field = new double[w][];
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> result.M_field[x] = field[x].clone());
         return result;
     }
     // Copy, but make containing set
@@ -228,6 +262,11 @@ public class ReconstructionComplexField implements ComplexField {
         return M_field;
     }
     /** {@inheritDoc} */
+    @Override public double[][] viewField()
+    {
+        return M_field;
+    }
+    /** {@inheritDoc} */
     @Override public void setField(double[][] field)
     {
         fieldChanged();
@@ -239,11 +278,12 @@ public class ReconstructionComplexField implements ComplexField {
         int w = width();
         int h = height();
         double[][] result = new double[w][h];
-        for (int x = 0; x < w; ++x) {
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> {
             for (int y = 0; y < h; ++y) {
-                result[x][y] = M_field[x][2 * y];
+                result[x][y] = field[x][2 * y];
             }
-        }
+        });
         return result;
     }
     /** {@inheritDoc} */
@@ -252,11 +292,12 @@ public class ReconstructionComplexField implements ComplexField {
         int w = width();
         int h = height();
         double[][] result = new double[w][h];
-        for (int x = 0; x < w; ++x) {
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> {
             for (int y = 0; y < h; ++y) {
-                result[x][y] = M_field[x][2 * y + 1];
+                result[x][y] = field[x][2 * y + 1];
             }
-        }
+        });
         return result;
     }
     /** {@inheritDoc} */
@@ -265,13 +306,8 @@ public class ReconstructionComplexField implements ComplexField {
         int w = width();
         int h = height();
         double[][] result = new double[w][h];
-        for (int x = 0; x < w; ++x) {
-            for (int y = 0; y < h; ++y) {
-                double r = M_field[x][2 * y];
-                double i = M_field[x][2 * y + 1];
-                result[x][y] = Math.sqrt(r*r + i*i);
-            }
-        }
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> ComplexKernels.amp(field[x], result[x]));
         return result;
     }
     /** {@inheritDoc} */
@@ -280,13 +316,8 @@ public class ReconstructionComplexField implements ComplexField {
         int w = width();
         int h = height();
         double[][] result = new double[w][h];
-        for (int x = 0; x < w; ++x) {
-            for (int y = 0; y < h; ++y) {
-                double r = M_field[x][2 * y];
-                double i = M_field[x][2 * y + 1];
-                result[x][y] = r*r + i*i;
-            }
-        }
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> ComplexKernels.amp2(field[x], result[x]));
         return result;
     }
     /** {@inheritDoc} */
@@ -295,13 +326,8 @@ public class ReconstructionComplexField implements ComplexField {
         int w = width();
         int h = height();
         double[][] result = new double[w][h];
-        for (int x = 0; x < w; ++x) {
-            for (int y = 0; y < h; ++y) {
-                double r = M_field[x][2 * y];
-                double i = M_field[x][2 * y + 1];
-                result[x][y] = Math.atan2(i, r);
-            }
-        }
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> ComplexKernels.arg(field[x], result[x]));
         return result;
     }
     /** {@inheritDoc} */
@@ -319,11 +345,12 @@ public class ReconstructionComplexField implements ComplexField {
         fieldChanged();
         int w = width();
         int h = height();
-        for (int x = 0; x < w; ++x) {
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> {
             for (int y = 0; y < h * 2; ++y) {
-                M_field[x][y] = -M_field[x][y];
+                field[x][y] = -field[x][y];
             }
-        }
+        });
     }
     /** {@inheritDoc} */
     @Override public void addInPlace(ComplexField other)
@@ -335,12 +362,13 @@ public class ReconstructionComplexField implements ComplexField {
             fieldChanged();
             int w = width();
             int h = height();
-            for (int x = 0; x < w; ++x) {
-                for (int y = 0; y < h * 2; ++y) {
-                    M_field[x][y*2] += other.getReal(x, y);
-                    M_field[x][y*2+1] += other.getImag(x, y);
+            final double[][] field = M_field;
+            forEachColumn(w, h, x -> {
+                for (int y = 0; y < h; ++y) {
+                    field[x][y*2] += other.getReal(x, y);
+                    field[x][y*2+1] += other.getImag(x, y);
                 }
-            }
+            });
         }
     }
     /** {@inheritDoc} */
@@ -353,12 +381,13 @@ public class ReconstructionComplexField implements ComplexField {
             fieldChanged();
             int w = width();
             int h = height();
-            for (int x = 0; x < w; ++x) {
-                for (int y = 0; y < h * 2; ++y) {
-                    M_field[x][y*2] -= other.getReal(x, y);
-                    M_field[x][y*2+1] -= other.getImag(x, y);
+            final double[][] field = M_field;
+            forEachColumn(w, h, x -> {
+                for (int y = 0; y < h; ++y) {
+                    field[x][y*2] -= other.getReal(x, y);
+                    field[x][y*2+1] -= other.getImag(x, y);
                 }
-            }
+            });
         }
     }
     /** {@inheritDoc} */
@@ -371,16 +400,17 @@ public class ReconstructionComplexField implements ComplexField {
             fieldChanged();
             int w = width();
             int h = height();
-            for (int x = 0; x < w; ++x) {
-                for (int y = 0; y < h * 2; ++y) {
-                    double a = M_field[x][y*2];
-                    double b = M_field[x][y*2+1];
+            final double[][] field = M_field;
+            forEachColumn(w, h, x -> {
+                for (int y = 0; y < h; ++y) {
+                    double a = field[x][y*2];
+                    double b = field[x][y*2+1];
                     double c = other.getReal(x, y);
                     double d = other.getImag(x, y);
-                    M_field[x][y*2] = a * c - b * d;
-                    M_field[x][y*2+1] = a * d + b * c;
+                    field[x][y*2] = a * c - b * d;
+                    field[x][y*2+1] = a * d + b * c;
                 }
-            }
+            });
         }
     }
     /** {@inheritDoc} */
@@ -393,17 +423,18 @@ public class ReconstructionComplexField implements ComplexField {
             fieldChanged();
             int w = width();
             int h = height();
-            for (int x = 0; x < w; ++x) {
-                for (int y = 0; y < h * 2; ++y) {
-                    double a = M_field[x][y*2];
-                    double b = M_field[x][y*2+1];
+            final double[][] field = M_field;
+            forEachColumn(w, h, x -> {
+                for (int y = 0; y < h; ++y) {
+                    double a = field[x][y*2];
+                    double b = field[x][y*2+1];
                     double c = other.getReal(x, y);
                     double d = other.getImag(x, y);
                     double denom = c*c + d*d;
-                    M_field[x][y*2] = (a * c + b * d) / denom;
-                    M_field[x][y*2+1] = (b * c - a * d) / denom;
+                    field[x][y*2] = (a * c + b * d) / denom;
+                    field[x][y*2+1] = (b * c - a * d) / denom;
                 }
-            }
+            });
         }
     }
     /** {@inheritDoc} */
@@ -411,24 +442,26 @@ public class ReconstructionComplexField implements ComplexField {
     {
         fieldChanged();
         int w = width();
-        int h = height() * 2;
-        for (int x = 0; x < w; ++x) {
-            for (int y = 0; y < h; ++y) {
-                M_field[x][y] += other[x][y];
+        int h = height();
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> {
+            for (int y = 0; y < h * 2; ++y) {
+                field[x][y] += other[x][y];
             }
-        }
+        });
     }
     /** {@inheritDoc} */
     @Override public void subtractInPlace(double[][] other)
     {
         fieldChanged();
         int w = width();
-        int h = height() * 2;
-        for (int x = 0; x < w; ++x) {
-            for (int y = 0; y < h; ++y) {
-                M_field[x][y] -= other[x][y];
+        int h = height();
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> {
+            for (int y = 0; y < h * 2; ++y) {
+                field[x][y] -= other[x][y];
             }
-        }
+        });
     }
     /** {@inheritDoc} */
     @Override public void multiplyInPlace(double[][] other)
@@ -436,16 +469,9 @@ public class ReconstructionComplexField implements ComplexField {
         fieldChanged();
         int w = width();
         int h = height();
-        for (int x = 0; x < w; ++x) {
-            for (int y = 0; y < h; ++y) {
-                double a = M_field[x][y*2];
-                double b = M_field[x][y*2+1];
-                double c = other[x][2*y];
-                double d = other[x][2*y+1];
-                M_field[x][y*2] = a * c - b * d;
-                M_field[x][y*2+1] = a * d + b * c;
-            }
-        }
+        final double[][] field = M_field;
+        forEachColumn(w, h,
+                      x -> ComplexKernels.multiply(field[x], other[x]));
     }
     /** {@inheritDoc} */
     @Override public void divideInPlace(double[][] other)
@@ -453,17 +479,20 @@ public class ReconstructionComplexField implements ComplexField {
         fieldChanged();
         int w = width();
         int h = height();
-        for (int x = 0; x < w; ++x) {
-            for (int y = 0; y < h; ++y) {
-                double a = M_field[x][y*2];
-                double b = M_field[x][y*2+1];
-                double c = other[x][2*y];
-                double d = other[x][2*y+1];
-                double denom = c*c + d*d;
-                M_field[x][y*2] = (a * c + b * d) / denom;
-                M_field[x][y*2+1] = (b * c - a * d) / denom;
-            }
-        }
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> ComplexKernels.divide(field[x], other[x]));
+    }
+    /** {@inheritDoc} */
+    @Override public void multiplySeparableInPlace(double[] columns,
+                                                   double[] rows)
+    {
+        fieldChanged();
+        int w = width();
+        int h = height();
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> ComplexKernels.multiply(
+                                    field[x], rows, columns[2*x],
+                                    columns[2*x+1]));
     }
     /** {@inheritDoc} */
     @Override public void addInPlace(double real, double imag)
@@ -471,12 +500,13 @@ public class ReconstructionComplexField implements ComplexField {
         fieldChanged();
         int w = width();
         int h = height();
-        for (int x = 0; x < w; ++x) {
+        final double[][] field = M_field;
+        forEachColumn(w, h, x -> {
             for (int y = 0; y < h; ++y) {
-                M_field[x][2*y] += real;
-                M_field[x][2*y+1] += imag;
+                field[x][2*y] += real;
+                field[x][2*y+1] += imag;
             }
-        }
+        });
     }
     /** {@inheritDoc} */
     @Override public void subtractInPlace(double real, double imag)
@@ -489,16 +519,9 @@ public class ReconstructionComplexField implements ComplexField {
         fieldChanged();
         int w = width();
         int h = height();
-        double c = real;
-        double d = imag;
-        for (int x = 0; x < w; ++x) {
-            for (int y = 0; y < h; ++y) {
-                double a = M_field[x][y*2];
-                double b = M_field[x][y*2+1];
-                M_field[x][y*2] = a * c - b * d;
-                M_field[x][y*2+1] = a * d + b * c;
-            }
-        }
+        final double[][] field = M_field;
+        forEachColumn(w, h,
+                      x -> ComplexKernels.multiply(field[x], real, imag));
     }
     /** {@inheritDoc} */
     @Override public void divideInPlace(double real, double imag)
@@ -506,19 +529,24 @@ public class ReconstructionComplexField implements ComplexField {
         fieldChanged();
         int w = width();
         int h = height();
-        double c = real;
-        double d = imag;
-        double denom = c*c + d*d;
-        for (int x = 0; x < w; ++x) {
-            for (int y = 0; y < h; ++y) {
-                double a = M_field[x][y*2];
-                double b = M_field[x][y*2+1];
-                M_field[x][y*2] = (a * c + b * d) / denom;
-                M_field[x][y*2+1] = (b * c - a * d) / denom;
-            }
-        }
+        final double[][] field = M_field;
+        forEachColumn(w, h,
+                      x -> ComplexKernels.divide(field[x], real, imag));
     }
 
+    // Do body for every column from 0 to columns, where the whole operation
+    // touches columns * height values.  The columns are done in parallel if
+    // that is at least the threshold.
+    private static void forEachColumn(int columns, int height,
+                                      IntConsumer body)
+    {
+        if (columns > 1 && (long)columns * height >= S_parallelThreshold) {
+            IntStream.range(0, columns).parallel().forEach(body);
+        }
+        else {
+            for (int x = 0; x < columns; ++x) body.accept(x);
+        }
+    }
     private void fieldChanged()
     {
         if (M_containing != null) {
@@ -529,4 +557,5 @@ public class ReconstructionComplexField implements ComplexField {
 
     double[][] M_field;
     private ReconstructionFieldImpl M_containing;
+    private static volatile int S_parallelThreshold = 1 << 16;
 }
@@ -61,4 +61,17 @@ public interface ReconstructionField {
      * @return A copy of this ReconstructionField.
      */
     ReconstructionField copy();
+    /** Copy only the Fourier transform of this ReconstructionField, finding it
+     * first if it has not been computed.  The copy will compute its normal
+     * field from the Fourier transform when it is needed.  By default, this
+     * just copies everything.
+     *
+     * @return A copy of this ReconstructionField that only has the Fourier
+     *         transform.
+     */
+    default ReconstructionField copyFourier()
+    {
+        fourier();
+        return copy();
+    }
 }
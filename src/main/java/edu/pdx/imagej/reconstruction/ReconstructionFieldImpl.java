@@ -89,6 +89,15 @@ public class ReconstructionFieldImpl implements ReconstructionField {
         if (M_field != null) result.M_field = M_field.copyIn(result);
         return result;
     }
+    /** {@inheritDoc} */
+    @Override
+    public ReconstructionFieldImpl copyFourier()
+    {
+        ReconstructionFieldImpl result = new ReconstructionFieldImpl();
+        result.M_fft = M_fft;
+        result.M_fourier = fourier().copyIn(result);
+        return result;
+    }
 
     private ReconstructionFieldImpl() {}
 
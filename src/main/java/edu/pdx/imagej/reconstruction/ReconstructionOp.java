@@ -19,8 +19,11 @@
 
 package edu.pdx.imagej.reconstruction;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import ij.IJ;
 import ij.ImagePlus;
@@ -35,6 +38,7 @@ import net.imagej.ops.AbstractOp;
 import net.imagej.ops.Op;
 
 import edu.pdx.imagej.reconstruction.units.DistanceUnitValue;
+import edu.pdx.imagej.reconstruction.plugin.LazyReconstructionPlugin;
 import edu.pdx.imagej.reconstruction.plugin.ReconstructionPlugin;
 
 /** An Op that calculates the entire reconstruction pipeline with any of the
@@ -68,7 +72,8 @@ import edu.pdx.imagej.reconstruction.plugin.ReconstructionPlugin;
  *                   use.
  * </ol>
  * There is no output for this op.  If you want to get the result, please use
- * {@link edu.pdx.imagej.reconstruction.result.Result Result}.
+ * {@link edu.pdx.imagej.reconstruction.result.Result Result}.  If your
+ * hologram is an ImgLib2 image instead, see {@link ImgReconstructionOp}.
  * <p>
  * If you want to add something to this process, please look at {@link
  * edu.pdx.imagej.reconstruction.plugin}.
@@ -85,6 +90,8 @@ public class ReconstructionOp extends AbstractOp {
 
     @Parameter private StatusService P_status;
 
+    private static final int SC_filteredCache = 4;
+
     @Override
     public void run()
     {
@@ -133,42 +140,26 @@ public class ReconstructionOp extends AbstractOp {
             if (plugin.hasError()) return;
         }
 
-        for (int t : P_ts) {
-            // Hologram
-            for (ReconstructionPlugin plugin : P_plugins) {
-                plugin.setHologramPriority();
-            }
-            Collections.sort(P_plugins);
-            field = createField(
-                P_hologram.getStack().getProcessor(t));
-            for (ReconstructionPlugin plugin : P_plugins) {
-                plugin.processHologram(field, t);
-                if (plugin.hasError()) return;
-            }
-
-            // Filtered Field
-            for (ReconstructionPlugin plugin : P_plugins) {
-                plugin.setFilteredFieldPriority();
-            }
-            Collections.sort(P_plugins);
-            for (ReconstructionPlugin plugin : P_plugins) {
-                plugin.processFilteredField(field, t);
-                if (plugin.hasError()) return;
+        // Lazy
+        Lazy lazy = null;
+        for (ReconstructionPlugin plugin : P_plugins) {
+            if (plugin instanceof LazyReconstructionPlugin
+                    && ((LazyReconstructionPlugin)plugin).isLazy()) {
+                if (lazy == null) lazy = new Lazy(P_plugins);
+                ((LazyReconstructionPlugin)plugin).processLazy(lazy);
             }
+        }
 
-            // Propagated Field
-            for (ReconstructionPlugin plugin : P_plugins) {
-                plugin.setPropagatedFieldPriority();
-            }
-            Collections.sort(P_plugins);
-            for (DistanceUnitValue z : P_zs) {
-                if (IJ.escapePressed()) {
-                    P_status.showStatus(1, 1, "Command canceled");
-                    return;
-                }
-                for (ReconstructionPlugin plugin : P_plugins) {
-                    plugin.processPropagatedField(field, t, z);
-                    if (plugin.hasError()) return;
+        if (lazy == null) {
+            for (int t : P_ts) {
+                field = createField(P_hologram.getStack().getProcessor(t));
+                if (!processFiltering(P_plugins, field, t)) return;
+                for (DistanceUnitValue z : P_zs) {
+                    if (IJ.escapePressed()) {
+                        P_status.showStatus(1, 1, "Command canceled");
+                        return;
+                    }
+                    if (!processPropagation(P_plugins, field, t, z)) return;
                 }
             }
         }
@@ -183,6 +174,89 @@ public class ReconstructionOp extends AbstractOp {
             if (plugin.hasError()) return;
         }
     }
+    // Hologram and Filtered Field
+    private static boolean processFiltering(List<ReconstructionPlugin> plugins,
+                                            ReconstructionField field, int t)
+    {
+        for (ReconstructionPlugin plugin : plugins) {
+            plugin.setHologramPriority();
+        }
+        Collections.sort(plugins);
+        for (ReconstructionPlugin plugin : plugins) {
+            plugin.processHologram(field, t);
+            if (plugin.hasError()) return false;
+        }
+        for (ReconstructionPlugin plugin : plugins) {
+            plugin.setFilteredFieldPriority();
+        }
+        Collections.sort(plugins);
+        for (ReconstructionPlugin plugin : plugins) {
+            plugin.processFilteredField(field, t);
+            if (plugin.hasError()) return false;
+        }
+        // Leave the plugins ready to propagate
+        for (ReconstructionPlugin plugin : plugins) {
+            plugin.setPropagatedFieldPriority();
+        }
+        Collections.sort(plugins);
+        return true;
+    }
+    // Propagated Field (the plugins must already be sorted for it)
+    private static boolean processPropagation(
+        List<ReconstructionPlugin> plugins, ReconstructionField field, int t,
+        DistanceUnitValue z)
+    {
+        for (ReconstructionPlugin plugin : plugins) {
+            plugin.processPropagatedField(field, t, z);
+            if (plugin.hasError()) return false;
+        }
+        return true;
+    }
+    // Reconstructs slices for the lazy plugins.  The filtered fields of the
+    // most recent times are kept, so that moving through z only costs the
+    // propagation.  It has its own list of the plugins, because it sorts them
+    // and it can be used while the op is still going through them.
+    private class Lazy implements LazyReconstruction {
+        Lazy(List<ReconstructionPlugin> plugins)
+        {
+            M_plugins = new ArrayList<>(plugins);
+        }
+        @Override
+        public synchronized ReconstructionField reconstruct(int t,
+                                                         DistanceUnitValue z)
+        {
+            ReconstructionField filtered = M_filtered.get(t);
+            if (filtered == null) {
+                filtered = createField(P_hologram.getStack().getProcessor(t));
+                if (!processFiltering(M_plugins, filtered, t)) {
+                    throw new RuntimeException("Unable to reconstruct time "
+                        + "slice " + t + ".");
+                }
+                M_filtered.put(t, filtered);
+            }
+            else {
+                for (ReconstructionPlugin plugin : M_plugins) {
+                    plugin.setPropagatedFieldPriority();
+                }
+                Collections.sort(M_plugins);
+            }
+            ReconstructionField result = filtered.copy();
+            if (!processPropagation(M_plugins, result, t, z)) {
+                throw new RuntimeException("Unable to reconstruct time slice "
+                    + t + " at z = " + z.value() + ".");
+            }
+            return result;
+        }
+        private final ArrayList<ReconstructionPlugin> M_plugins;
+        private final LinkedHashMap<Integer, ReconstructionField> M_filtered
+            = new LinkedHashMap<Integer, ReconstructionField>(16, 0.75f, true) {
+                @Override protected boolean removeEldestEntry(
+                    Map.Entry<Integer, ReconstructionField> eldest)
+                {
+                    return size() > SC_filteredCache;
+                }
+            };
+    }
     private static ReconstructionField createField(ImageProcessor image)
     {
         float[][] floatArray = image.getFloatArray();
@@ -19,10 +19,11 @@
 
 package edu.pdx.imagej.reconstruction.filter;
 
-import java.awt.Point;
 import java.awt.Rectangle;
 
+import ij.IJ;
 import ij.ImagePlus;
+import ij.gui.OvalRoi;
 import ij.gui.Roi;
 import ij.gui.ShapeRoi;
 import ij.gui.WaitForUserDialog;
@@ -31,6 +32,9 @@ import ij.process.FloatProcessor;
 import org.scijava.Priority;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.prefs.PrefService;
+
+import edu.pdx.imagej.dynamic_parameters.BoolParameter;
 
 import edu.pdx.imagej.reconstruction.plugin.ReconstructionPlugin;
 import edu.pdx.imagej.reconstruction.plugin.AbstractReconstructionPlugin;
@@ -44,6 +48,10 @@ import edu.pdx.imagej.reconstruction.ConstReconstructionField;
  * also use that same filter on any image you like using {@link filterField}.
  * Its priority is first, so as soon as {@link processOriginalHologram} has
  * started, you are good to use the filter.
+ * <p>
+ * The filter can also be found automatically, without any user interaction,
+ * using {@link findSideband}.  Whether or not this is done is set in the
+ * options command or through {@link setAutomatic}.
  */
 @Plugin(type = ReconstructionPlugin.class, name = "Filter",
         priority = Priority.FIRST)
@@ -57,14 +65,45 @@ public class Filter extends AbstractReconstructionPlugin
     public void setFilter(Roi roi)
     {
         M_roi = roi;
+        M_mask = null;
         M_filtered = true;
     }
     public void setDefaultMessage(String message)
     {
         M_message = message;
     }
+    /** Set whether or not the filter should be found automatically.  This
+     * overrides whatever was set in the options command.
+     *
+     * @param automatic Whether or not to find the filter automatically using
+     *                  {@link findSideband}.
+     */
+    public void setAutomatic(boolean automatic)
+    {
+        M_automatic = automatic;
+    }
+    /** Get whether or not the filter is found automatically.
+     *
+     * @return Whether or not {@link findSideband} is used instead of asking
+     *         the user for the filter.
+     */
+    public boolean getAutomatic()
+    {
+        return M_automatic != null && M_automatic;
+    }
+    /** Read whether or not to find the filter automatically from the options.
+     */
+    @Override
+    public void processBeginning()
+    {
+        if (M_automatic == null && P_prefs != null) {
+            M_automatic = P_prefs.getBoolean(Filter.class, "automatic", false);
+        }
+    }
     /** Get the filter from the user through the gui, if a filter hasn't been
-     * set already.
+     * set already.  If the filter is set to be automatic, it will be found
+     * using {@link findSideband} instead, and it is an error if no sideband
+     * can be found.
      *
      * @param field The field to acquire the filter from
      */
@@ -72,10 +111,93 @@ public class Filter extends AbstractReconstructionPlugin
     public void processOriginalHologram(ConstReconstructionField field)
     {
         if (!M_filtered) {
-            getFilter(field, M_message);
+            if (getAutomatic()) {
+                M_roi = findSideband(field);
+                M_mask = null;
+                if (M_roi == null) {
+                    IJ.error("Filter", "No sideband could be found to filter "
+                        + "automatically.  Please select the filter by hand.");
+                    M_error = true;
+                    return;
+                }
+            }
+            else getFilter(field, M_message);
             M_filtered = true;
         }
     }
+    /** Find the filter automatically.  This looks for the brightest point of a
+     * downsampled power spectrum, ignoring everything close to the center where
+     * the DC term is.  Because the two sidebands of a hologram are symmetric,
+     * only the one on the right half (or the bottom half, if it's in the
+     * middle) is ever picked.  The resulting roi is a circle centered on the
+     * sideband whose radius is a third of its distance from the center, which
+     * is as large as it can be without also picking up the DC term.
+     *
+     * @param field The field to find the filter for.
+     * @return The roi around the sideband, or <code>null</code> if no sideband
+     *         could be found.
+     */
+    public static Roi findSideband(ConstReconstructionField field)
+    {
+        double[][] power = field.fourier().getAmp2();
+        final int width = power.length;
+        final int height = power[0].length;
+        final int centerX = width / 2;
+        final int centerY = height / 2;
+        // Downsample so that the search area is never too big.  Summing the
+        // power in each block means that a peak can't fall through the cracks.
+        final int scale = Math.max(1, (Math.max(width, height)
+                                        + SC_searchSize - 1) / SC_searchSize);
+        final int smallWidth = (width + scale - 1) / scale;
+        final int smallHeight = (height + scale - 1) / scale;
+        double[][] small = new double[smallWidth][smallHeight];
+        for (int x = 0; x < width; ++x) {
+            double[] smallCol = small[x / scale];
+            for (int y = 0; y < height; ++y) {
+                smallCol[y / scale] += power[x][y];
+            }
+        }
+        final double dcRadius = Math.min(width, height) / SC_dcFraction;
+        final double dcRadius2 = dcRadius * dcRadius;
+        int bestX = -1;
+        int bestY = -1;
+        double best = 0;
+        for (int sx = 0; sx < smallWidth; ++sx) {
+            for (int sy = 0; sy < smallHeight; ++sy) {
+                // Use the middle of the block to decide where the block is
+                double dx = sx * scale + (scale - 1) / 2.0 - centerX;
+                double dy = sy * scale + (scale - 1) / 2.0 - centerY;
+                if (dx*dx + dy*dy <= dcRadius2) continue;
+                if (dx < 0 || (dx == 0 && dy <= 0)) continue;
+                if (small[sx][sy] > best) {
+                    best = small[sx][sy];
+                    bestX = sx;
+                    bestY = sy;
+                }
+            }
+        }
+        if (bestX == -1) return null;
+        // Find the actual peak inside of the block
+        int peakX = bestX * scale;
+        int peakY = bestY * scale;
+        double peak = -1;
+        for (int x = bestX * scale;
+                x < Math.min(width, (bestX+1) * scale); ++x) {
+            for (int y = bestY * scale;
+                    y < Math.min(height, (bestY+1) * scale); ++y) {
+                if (power[x][y] > peak) {
+                    peak = power[x][y];
+                    peakX = x;
+                    peakY = y;
+                }
+            }
+        }
+        double dx = peakX - centerX;
+        double dy = peakY - centerY;
+        int radius = Math.max(1, (int)(Math.sqrt(dx*dx + dy*dy) / 3));
+        return new OvalRoi(peakX - radius, peakY - radius,
+                           2 * radius + 1, 2 * radius + 1);
+    }
     /** Get the filter from a field.
      *
      * @param field The field to acquire the filter from
@@ -103,6 +225,7 @@ public class Filter extends AbstractReconstructionPlugin
             return;
         }
         M_roi = imp.getRoi();
+        M_mask = null;
         imp.hide();
     }
     /** Filter a field (just calls {@link filterField filterField}.
@@ -123,30 +246,70 @@ public class Filter extends AbstractReconstructionPlugin
     public void filterField(ReconstructionField field)
     {
         if (M_roi == null) return; // If the user didn't select any roi
-        double[][] fourier = field.fourier().getField();
-        double[][] filtered = new double[fourier.length][fourier[0].length];
-        Rectangle rect = M_roi.getBounds();
-        int centerX = (int)rect.getCenterX();
-        int centerY = (int)rect.getCenterY();
-        int xp = field.fourier().width() / 2 - centerX;
-        int yp = field.fourier().height() / 2 - centerY;
-        for (Point p : M_roi) {
-            if (p.x < 0 || p.x >= fourier.length) continue;
-            if (p.y < 0 || p.y >= fourier[0].length / 2) continue;
-            filtered[p.x + xp][(p.y + yp) * 2] = fourier[p.x][p.y * 2];
-            filtered[p.x + xp][(p.y + yp) * 2 + 1] = fourier[p.x][p.y * 2 + 1];
+        getMask(field.fourier().width(), field.fourier().height())
+            .apply(field.fourier().getField());
+    }
+    /** Get the part of the Fourier transform that is left after filtering.
+     * Everything outside of this rectangle will be zero after {@link
+     * filterField} is called on a field of this size.
+     *
+     * @param width The width of the field that will be filtered.
+     * @param height The height of the field that will be filtered.
+     * @return The bounding box of the filtered Fourier transform, or <code>
+     *         null</code> if there is no filter or nothing is left after
+     *         filtering.
+     */
+    public Rectangle getSupport(int width, int height)
+    {
+        if (M_roi == null) return null;
+        return getMask(width, height).support();
+    }
+    // The roi only needs to be turned into spans once for each size
+    private FilterMask getMask(int width, int height)
+    {
+        if (M_mask == null || !M_mask.fits(width, height)) {
+            M_mask = new FilterMask(M_roi, width, height);
         }
-        field.fourier().setField(filtered);
+        return M_mask;
     }
     /** Returns whether or not the user quit when getting the filter.
      *
      * @return Whether or not the user quit.
      */
     @Override public boolean hasError() {return M_error;}
-    @Override public Filter duplicate() {return new Filter();}
+    @Override public Filter duplicate()
+    {
+        Filter result = new Filter();
+        result.M_automatic = M_automatic;
+        return result;
+    }
+    @Override
+    public BoolParameter optionsParam()
+    {
+        if (M_optionsParam == null) {
+            M_optionsParam = new BoolParameter("Find filter automatically",
+                P_prefs.getBoolean(Filter.class, "automatic", false));
+        }
+        return M_optionsParam;
+    }
+    @Override
+    public void readOptions()
+    {
+        P_prefs.put(Filter.class, "automatic", M_optionsParam.getValue());
+    }
+
+    // The largest size of the downsampled spectrum used to find the sideband
+    private static final int SC_searchSize = 256;
+    // Anything closer to the center than min(width, height) / SC_dcFraction is
+    // assumed to be part of the DC term
+    private static final double SC_dcFraction = 8;
 
     private Roi M_roi;
+    private FilterMask M_mask;
     private boolean M_error = false;
     private boolean M_filtered = false;
     private String M_message = "Please select the ROI and then press OK.";
+    private Boolean M_automatic;
+    private BoolParameter M_optionsParam;
+    @Parameter private PrefService P_prefs;
 }
@@ -0,0 +1,145 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.filter;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import ij.gui.Roi;
+
+/* A roi that has been compiled for a particular field size.  Each column of
+ * the field (the [x] index) is contiguous, so the roi is stored as spans of
+ * contiguous y values in each column, along with where those spans end up once
+ * the roi has been moved to the center.  Filtering is then just a few bulk
+ * array copies rather than visiting every point in the roi.
+ */
+class FilterMask {
+    FilterMask(Roi roi, int width, int height)
+    {
+        M_width = width;
+        M_height = height;
+        Rectangle rect = roi.getBounds();
+        int centerX = (int)rect.getCenterX();
+        int centerY = (int)rect.getCenterY();
+        int xp = width / 2 - centerX;
+        int yp = height / 2 - centerY;
+        // Rasterize the roi inside of its bounds, skipping anything that would
+        // be outside of the field either before or after being moved
+        boolean[][] inside = new boolean[Math.max(rect.width, 1)]
+                                        [Math.max(rect.height, 1)];
+        for (Point p : roi) {
+            if (p.x < 0 || p.x >= width) continue;
+            if (p.y < 0 || p.y >= height) continue;
+            if (p.x + xp < 0 || p.x + xp >= width) continue;
+            if (p.y + yp < 0 || p.y + yp >= height) continue;
+            int ix = p.x - rect.x;
+            int iy = p.y - rect.y;
+            if (ix < 0 || ix >= inside.length) continue;
+            if (iy < 0 || iy >= inside[0].length) continue;
+            inside[ix][iy] = true;
+        }
+        int numSpans = 0;
+        for (boolean[] column : inside) {
+            for (int iy = 0; iy < column.length; ++iy) {
+                if (column[iy] && (iy == 0 || !column[iy - 1])) ++numSpans;
+            }
+        }
+        M_srcX = new int[numSpans];
+        M_srcOffset = new int[numSpans];
+        M_dstX = new int[numSpans];
+        M_dstOffset = new int[numSpans];
+        M_length = new int[numSpans];
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        int span = 0;
+        for (int ix = 0; ix < inside.length; ++ix) {
+            boolean[] column = inside[ix];
+            int iy = 0;
+            while (iy < column.length) {
+                if (!column[iy]) {
+                    ++iy;
+                    continue;
+                }
+                int start = iy;
+                while (iy < column.length && column[iy]) ++iy;
+                int x = ix + rect.x;
+                int y = start + rect.y;
+                int length = iy - start;
+                M_srcX[span] = x;
+                M_srcOffset[span] = y * 2;
+                M_dstX[span] = x + xp;
+                M_dstOffset[span] = (y + yp) * 2;
+                M_length[span] = length * 2;
+                M_size += length * 2;
+                minX = Math.min(minX, x + xp);
+                maxX = Math.max(maxX, x + xp);
+                minY = Math.min(minY, y + yp);
+                maxY = Math.max(maxY, y + yp + length - 1);
+                ++span;
+            }
+        }
+        if (numSpans != 0) {
+            M_support = new Rectangle(minX, minY, maxX - minX + 1,
+                                      maxY - minY + 1);
+        }
+    }
+    /* Filter the fourier transform in place.  The values inside of the roi are
+     * gathered into a buffer that is reused between calls, the whole field is
+     * cleared, and then the values are written back at their centered
+     * location.
+     */
+    void apply(double[][] fourier)
+    {
+        if (M_buffer == null) M_buffer = new double[M_size];
+        int pos = 0;
+        for (int i = 0; i < M_srcX.length; ++i) {
+            System.arraycopy(fourier[M_srcX[i]], M_srcOffset[i],
+                             M_buffer, pos, M_length[i]);
+            pos += M_length[i];
+        }
+        for (double[] column : fourier) Arrays.fill(column, 0);
+        pos = 0;
+        for (int i = 0; i < M_dstX.length; ++i) {
+            System.arraycopy(M_buffer, pos,
+                             fourier[M_dstX[i]], M_dstOffset[i], M_length[i]);
+            pos += M_length[i];
+        }
+    }
+    boolean fits(int width, int height)
+    {
+        return width == M_width && height == M_height;
+    }
+    /* The bounding box of everything that is left after filtering, or null if
+     * nothing is left.
+     */
+    Rectangle support() {return M_support;}
+
+    private final int M_width;
+    private final int M_height;
+    private final int[] M_srcX;
+    private final int[] M_srcOffset;
+    private final int[] M_dstX;
+    private final int[] M_dstOffset;
+    private final int[] M_length;
+    private int M_size;
+    private Rectangle M_support;
+    private double[] M_buffer;
+}
@@ -20,7 +20,9 @@
 package edu.pdx.imagej.reconstruction.gray_phase;
 
 import org.scijava.Priority;
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.prefs.PrefService;
 
 import edu.pdx.imagej.dynamic_parameters.BoolParameter;
 
@@ -28,6 +30,7 @@ import edu.pdx.imagej.reconstruction.plugin.AbstractReconstructionPlugin;
 import edu.pdx.imagej.reconstruction.plugin.MainReconstructionPlugin;
 import edu.pdx.imagej.reconstruction.plugin.ReconstructionPlugin;
 import edu.pdx.imagej.reconstruction.units.DistanceUnitValue;
+import edu.pdx.imagej.reconstruction.FastMath;
 import edu.pdx.imagej.reconstruction.ReconstructionField;
 
 @Plugin(
@@ -48,9 +51,32 @@ public class GrayPhase extends AbstractReconstructionPlugin
     @Override public GrayPhase duplicate()
     {
         if (M_live) M_doGray = M_param.getValue();
-        return new GrayPhase(M_doGray);
+        GrayPhase result = new GrayPhase(M_doGray);
+        result.M_approximate = M_approximate;
+        return result;
     }
     @Override public BoolParameter param() {return M_param;}
+    /** Set whether the phase should be found with {@link FastMath#atan2}.
+     * Its error is much smaller than the bins used to find the background, so
+     * the result is almost always the same.  This overrides whatever was set
+     * in the options command.
+     *
+     * @param approximate Whether to approximate the phase.
+     */
+    public void setApproximate(boolean approximate)
+    {
+        M_approximate = approximate;
+    }
+    /** Read whether or not to approximate the phase from the options.
+     */
+    @Override
+    public void processBeginning()
+    {
+        if (M_approximate == null && P_prefs != null) {
+            M_approximate = P_prefs.getBoolean(GrayPhase.class, "approximate",
+                                               false);
+        }
+    }
 
     @Override
     public void processPropagatedField(
@@ -63,12 +89,17 @@ public class GrayPhase extends AbstractReconstructionPlugin
         if (!M_doGray) return;
         final int num_bins = 1000;
         int[] bins = new int[num_bins];
-        double[][] phase = field.field().getArg();
-        int x_size = phase.length;
-        int y_size = phase[0].length;
+        final boolean approximate = M_approximate != null && M_approximate;
+        // Approximating doesn't need the whole phase image made first
+        double[][] phase = approximate ? null : field.field().getArg();
+        double[][] values = approximate ? field.field().viewField() : null;
+        int x_size = field.field().width();
+        int y_size = field.field().height();
         for (int x = 0; x < x_size; ++x) {
             for (int y = 0; y < y_size; ++y) {
-                double val = phase[x][y];
+                double val = approximate
+                    ? FastMath.atan2(values[x][2*y+1], values[x][2*y])
+                    : phase[x][y];
                 int index = (int)((val + Math.PI) / (2 * Math.PI) * num_bins);
                 // I don't know if these are possible, (especially the first),
                 // but it's good to be safe
@@ -89,8 +120,27 @@ public class GrayPhase extends AbstractReconstructionPlugin
         field.field().multiplyInPlace(Math.cos(diff), Math.sin(diff));
     }
 
+    @Override
+    public BoolParameter optionsParam()
+    {
+        if (M_optionsParam == null) {
+            M_optionsParam = new BoolParameter(
+                "Approximate phase to find the background",
+                P_prefs.getBoolean(GrayPhase.class, "approximate", false));
+        }
+        return M_optionsParam;
+    }
+    @Override
+    public void readOptions()
+    {
+        P_prefs.put(GrayPhase.class, "approximate", M_optionsParam.getValue());
+    }
+
     private boolean M_live = false;
     private boolean M_doGray = false;
+    private Boolean M_approximate;
     private BoolParameter M_param
         = new BoolParameter("Make Phase Background Gray", true);
+    private BoolParameter M_optionsParam;
+    @Parameter private PrefService P_prefs;
 }
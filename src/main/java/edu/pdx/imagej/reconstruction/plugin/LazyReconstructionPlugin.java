@@ -0,0 +1,47 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.plugin;
+
+import edu.pdx.imagej.reconstruction.LazyReconstruction;
+
+/** A plugin that can ask for slices to be reconstructed only when it needs
+ * them.  If any plugin {@link isLazy is lazy}, the reconstruction does not go
+ * through every t and z slice.  Instead, right after {@link
+ * ReconstructionPlugin#processOriginalHologram processOriginalHologram}, the
+ * lazy plugins are given a {@link LazyReconstruction} that they can use to get
+ * any slice they want, and then {@link ReconstructionPlugin#processEnding
+ * processEnding} is called right away.
+ */
+public interface LazyReconstructionPlugin extends ReconstructionPlugin {
+    /** Whether or not this plugin wants slices reconstructed lazily.  This is
+     * asked after {@link ReconstructionPlugin#processOriginalHologram
+     * processOriginalHologram}.
+     *
+     * @return <code>true</code> if slices should only be reconstructed on
+     *         demand.
+     */
+    boolean isLazy();
+    /** Get the object used to reconstruct slices.  It can be kept for as long
+     * as it is needed, even after the reconstruction has ended.
+     *
+     * @param reconstruction The object used to reconstruct slices.
+     */
+    void processLazy(LazyReconstruction reconstruction);
+}
@@ -32,6 +32,8 @@ import ij.ImagePlus;
 
 import org.scijava.plugin.Plugin;
 
+import edu.pdx.imagej.reconstruction.ComplexField;
+import edu.pdx.imagej.reconstruction.ConstComplexField;
 import edu.pdx.imagej.reconstruction.ConstReconstructionField;
 import edu.pdx.imagej.reconstruction.ReconstructionField;
 import edu.pdx.imagej.reconstruction.plugin.ReconstructionPlugin;
@@ -109,7 +111,10 @@ public class PolyTilt extends HoldingSinglePlugin<PolyTiltPlugin>
             if (plugin instanceof Reference) M_reference = (Reference)plugin;
         }
     }
-    /** Get the polynomial fit.
+    /** Get the polynomial fit.  If the {@link
+     * edu.pdx.imagej.reconstruction.reference.Reference Reference} hologram is
+     * the same for every time slice, it is folded into the polynomial fit, so
+     * that each field only needs to be multiplied once.
      *
      * @param field The field to apply the polynomial fit to.
      */
@@ -138,24 +143,23 @@ public class PolyTilt extends HoldingSinglePlugin<PolyTiltPlugin>
             vPoly = fitAlong(getPlugin().getVLine());
         }
 
-        final int width = M_phase.length;
-        final int height = M_phase[0].length;
-        M_polyField = new double[width][height*2];
-        for (int x = 0; x < width; ++x) {
-            for (int y = 0; y < height; ++y) {
-                double val = 0;
-                for (int i = 0; i < hPoly.length; ++i) {
-                    val += hPoly[i] * Math.pow(x, i + 1);
-                    val += vPoly[i] * Math.pow(y, i + 1);
-                }
-                val *= -1;
-                M_polyField[x][2*y  ] = (float)Math.cos(val);
-                M_polyField[x][2*y+1] = (float)Math.sin(val);
+        // The tilt is exp(-i(h(x) + v(y))), which is exp(-i h(x)) times
+        // exp(-i v(y)), so only those two need to be kept.
+        M_hTilt = tilt(hPoly, M_phase.length);
+        M_vTilt = tilt(vPoly, M_phase[0].length);
+        M_combined = null;
+        if (M_reference != null) {
+            ConstComplexField reference = M_reference.foldConstantReference();
+            if (reference != null) {
+                ComplexField combined = reference.copy();
+                combined.multiplySeparableInPlace(M_hTilt, M_vTilt);
+                M_combined = combined.getField();
             }
         }
     }
     /** Apply the polynomial fit.  You may use this yourself on an arbitrary
-     * field if you wish.
+     * field if you wish, but be aware that it also applies the reference
+     * hologram if that was folded into it.
      *
      * @param field The field to apply the polynomial fit to.
      * @param t Unused.
@@ -164,7 +168,8 @@ public class PolyTilt extends HoldingSinglePlugin<PolyTiltPlugin>
     public void processFilteredField(ReconstructionField field, int t)
     {
         if (M_live && !M_param.doPolyTilt()) return;
-        field.field().multiplyInPlace(M_polyField);
+        if (M_combined != null) field.field().multiplyInPlace(M_combined);
+        else field.field().multiplySeparableInPlace(M_hTilt, M_vTilt);
     }
     /** Returns a singleton list of <code>{@link
      * PolyTiltPlugin}.class</code>.
@@ -245,8 +250,8 @@ public class PolyTilt extends HoldingSinglePlugin<PolyTiltPlugin>
     public static double polyEval(double[] poly, double x)
     {
         double result = 0;
-        for (int i = 0; i < poly.length; ++i) {
-            result += poly[i] * Math.pow(x, i);
+        for (int i = poly.length - 1; i >= 0; --i) {
+            result = result * x + poly[i];
         }
         return result;
     }
@@ -266,6 +271,21 @@ public class PolyTilt extends HoldingSinglePlugin<PolyTiltPlugin>
      */
     public int height() {return M_phase[0].length;}
 
+    // exp(-i poly(x)) for each x from 0 to size, real then imaginary, where
+    // poly has no constant term
+    private static double[] tilt(double[] poly, int size)
+    {
+        double[] result = new double[size * 2];
+        for (int x = 0; x < size; ++x) {
+            double val = 0;
+            for (int i = poly.length - 1; i >= 0; --i) {
+                val = (val + poly[i]) * x;
+            }
+            result[2*x  ] = Math.cos(-val);
+            result[2*x+1] = Math.sin(-val);
+        }
+        return result;
+    }
     private static double[] removeConstant(double[] poly)
     {
         return Arrays.copyOfRange(poly, 1, poly.length);
@@ -276,7 +296,10 @@ public class PolyTilt extends HoldingSinglePlugin<PolyTiltPlugin>
     private PolyTiltParameter M_param;
     double[][] M_phase; // Package private for testing
     private double[] M_lastPhase;
-    private double[][] M_polyField;
+    private double[] M_hTilt;
+    private double[] M_vTilt;
+    // The tilt times the reference hologram, if that was folded in
+    private double[][] M_combined;
     int M_degree; // Package private for testing
     boolean M_live = false;
     private int M_startingT;
@@ -20,7 +20,6 @@
 package edu.pdx.imagej.reconstruction.propagation;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 
 import ij.ImagePlus;
@@ -79,7 +78,10 @@ public class Propagation extends HoldingSinglePlugin<PropagationPlugin>
     @Override public void processPropagatedField(ReconstructionField field,
                                                    int t, DistanceUnitValue z)
     {
-        if (M_tsProcessed.add(t)) {
+        // A different field means it is starting over from the filtered field,
+        // which happens with every new t, and with every slice when slices are
+        // reconstructed lazily.
+        if (t != M_lastT || field != M_lastField) {
             M_lastZ = new DistanceUnitValue();
             if (field != null) {
                 M_originalField = new ConstReconstructionField(field.copy());
@@ -88,6 +90,8 @@ public class Propagation extends HoldingSinglePlugin<PropagationPlugin>
         }
         getPlugin().propagate(M_originalField, z, field, M_lastZ);
         M_lastZ = z;
+        M_lastT = t;
+        M_lastField = field;
     }
     /** Returns a singleton list of <code>{@link
      * PropagationPlugin}.class</code>.
@@ -100,7 +104,8 @@ public class Propagation extends HoldingSinglePlugin<PropagationPlugin>
         return result;
     }
 
-    private HashSet<Integer> M_tsProcessed = new HashSet<>();
+    private int M_lastT = Integer.MIN_VALUE;
+    private ReconstructionField M_lastField;
     private ConstReconstructionField M_originalField;
     private DistanceUnitValue M_lastZ;
 }
@@ -0,0 +1,156 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.reference;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.io.FileInfo;
+import ij.process.ImageProcessor;
+
+// Reads bands of rows out of the slices of a stack, as byte[], short[], or
+// float[] pixels, without keeping any whole slice around.
+//
+// If the stack is a virtual stack of an uncompressed file with every slice one
+// after another, like ImageJ writes them, only the rows in the band are read
+// from the file.  Otherwise the whole slice is got from the stack and just the
+// band is copied out of it.
+class BandReader implements AutoCloseable {
+    BandReader(ImagePlus imp)
+    {
+        M_stack = imp.getImageStack();
+        M_width = imp.getWidth();
+        M_height = imp.getHeight();
+        FileInfo fi = imp.getOriginalFileInfo();
+        if (M_stack.isVirtual() && fi != null && isPlain(fi)
+                && fi.width == M_width && fi.height == M_height
+                && fi.nImages == M_stack.getSize()) {
+            File file = new File(fi.directory, fi.fileName);
+            try {
+                M_file = new RandomAccessFile(file, "r");
+                M_info = fi;
+            }
+            catch (IOException e) {
+                M_file = null;
+            }
+        }
+    }
+    // Rows from y0 up to y1 of slice t, which starts at 1
+    Object read(int t, int y0, int y1)
+    {
+        if (M_file != null) {
+            try {
+                return readFile(t, y0, y1);
+            }
+            // If the file can't be read any more, ask the stack instead
+            catch (IOException e) {
+                close();
+            }
+        }
+        return readStack(t, y0, y1);
+    }
+    @Override
+    public void close()
+    {
+        if (M_file != null) {
+            try {
+                M_file.close();
+            }
+            catch (IOException e) {}
+            M_file = null;
+        }
+    }
+
+    private Object readStack(int t, int y0, int y1)
+    {
+        Object slice = M_stack.getPixels(t);
+        if (!(slice instanceof byte[] || slice instanceof short[]
+                || slice instanceof float[])) {
+            ImageProcessor proc = M_stack.getProcessor(t).convertToFloat();
+            slice = proc.getPixels();
+        }
+        if (y0 == 0 && y1 == M_height) return slice;
+        final int start = y0 * M_width;
+        final int length = (y1 - y0) * M_width;
+        Object result;
+        if (slice instanceof byte[]) result = new byte[length];
+        else if (slice instanceof short[]) result = new short[length];
+        else result = new float[length];
+        System.arraycopy(slice, start, result, 0, length);
+        return result;
+    }
+    private Object readFile(int t, int y0, int y1) throws IOException
+    {
+        final int bytes = M_info.getBytesPerPixel();
+        final long sliceSize = (long)M_width * M_height * bytes
+                               + M_info.gapBetweenImages;
+        final int length = (y1 - y0) * M_width;
+        final long position = M_info.getOffset() + (t - 1) * sliceSize
+                              + (long)y0 * M_width * bytes;
+        byte[] data = new byte[length * bytes];
+        M_file.seek(position);
+        M_file.readFully(data);
+        ByteBuffer buf = ByteBuffer.wrap(data).order(M_info.intelByteOrder
+            ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        switch (M_info.fileType) {
+            case FileInfo.GRAY8:
+                return data;
+            case FileInfo.GRAY16_UNSIGNED: {
+                short[] result = new short[length];
+                buf.asShortBuffer().get(result);
+                return result;
+            }
+            case FileInfo.GRAY16_SIGNED: {
+                // ImageJ shifts these to be unsigned
+                short[] result = new short[length];
+                buf.asShortBuffer().get(result);
+                for (int i = 0; i < length; ++i) result[i] += 32768;
+                return result;
+            }
+            default: {
+                float[] result = new float[length];
+                buf.asFloatBuffer().get(result);
+                return result;
+            }
+        }
+    }
+    // Whether the pixels in the file are exactly the pixels that ImageJ uses
+    private static boolean isPlain(FileInfo fi)
+    {
+        if (fi.compression > FileInfo.COMPRESSION_NONE) return false;
+        if (fi.directory == null || fi.fileName == null) return false;
+        if (fi.url != null && !fi.url.isEmpty()) return false;
+        return fi.fileType == FileInfo.GRAY8
+            || fi.fileType == FileInfo.GRAY16_UNSIGNED
+            || fi.fileType == FileInfo.GRAY16_SIGNED
+            || fi.fileType == FileInfo.GRAY32_FLOAT;
+    }
+
+    private final ImageStack M_stack;
+    private final int M_width;
+    private final int M_height;
+    private RandomAccessFile M_file;
+    private FileInfo M_info;
+}
@@ -70,6 +70,12 @@ public class Median extends AbstractReferencePlugin {
     {
         return new Median(getReferenceHolo(null, 0).copy());
     }
+    /** Returns <code>true</code>.
+     *
+     * @return <code>true</code>.
+     */
+    @Override
+    public boolean isConstant() {return true;}
     /** Get the reference hologram. */
     @Override
     public ReconstructionField getReferenceHolo(
@@ -20,6 +20,8 @@
 package edu.pdx.imagej.reconstruction.reference;
 
 import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import ij.ImagePlus;
@@ -77,15 +79,26 @@ public class MedianOffset extends AbstractReferencePlugin {
     public ReconstructionField getReferenceHolo(
         ConstReconstructionField field, int t)
     {
-        if (M_param != null) {
-            M_medianImg = M_param.getValue().imp;
-            M_ts = M_param.getValue().ts;
-            M_offset = M_param.getValue().offset;
-        }
+        readParams();
         return getReferenceHolo(t, M_medianImg, M_ts, M_offset);
     }
+    /** Get the image and the time slices in it that the median is taken of.
+     * The offset is clamped to the image, so many time slices near the ends
+     * share a median.
+     */
+    @Override
+    public Object referenceKey(int t)
+    {
+        readParams();
+        return Arrays.asList(M_medianImg, new ArrayList<>(M_ts),
+                             start(t, M_medianImg, M_ts, M_offset));
+    }
     /** Get the reference hologram.  This is what actually gets the reference
      * hologram, because this is whtat this class cares about more.
+     * <p>
+     * The median is kept up to date as <code>t</code> changes rather than
+     * found from scratch, so calling this for one <code>t</code> after another
+     * only needs to look at the slices that moved into and out of the window.
      *
      * @param t The time slice of the current field being reconstructed.
      * @param imp The stack of images to take the median of.
@@ -98,20 +111,14 @@ public class MedianOffset extends AbstractReferencePlugin {
                                                   List<Integer> ts,
                                                   int offset)
     {
-        // Like offset, should this be cached?
-
-        int minT = ts.get(0), maxT = ts.get(0);
-        for (int t2 : ts) {
-            if (t2 < minT) minT = t2;
-            if (t2 > maxT) maxT = t2;
+        int start = start(t, imp, ts, offset);
+        if (M_sliding == null || M_sliding.image() != imp) {
+            M_sliding = new SlidingMedian(imp);
         }
-        int newOffset = OffsetUtil.getMultiOffset(offset, t, 1,
-                                                     imp.getImageStackSize(),
-                                                     minT, maxT);
-        double[][] real = MedianUtil.calculateMedian(imp,
+        double[][] real = M_sliding.median(
             new AbstractList<Integer>() {
                 @Override public Integer get(int index)
-                    {return ts.get(index) + newOffset + t - 1;}
+                    {return ts.get(index) + start;}
                 @Override public int size() {return ts.size();}
             });
         double[][] imag = new double[real.length][real[0].length];
@@ -123,10 +130,32 @@ public class MedianOffset extends AbstractReferencePlugin {
         return M_param;
     }
 
+    private void readParams()
+    {
+        if (M_param != null) {
+            M_medianImg = M_param.getValue().imp;
+            M_ts = M_param.getValue().ts;
+            M_offset = M_param.getValue().offset;
+        }
+    }
+    // What to add to each of ts to get the time slices used for t
+    private static int start(int t, ImagePlus imp, List<Integer> ts,
+                             int offset)
+    {
+        int minT = ts.get(0), maxT = ts.get(0);
+        for (int t2 : ts) {
+            if (t2 < minT) minT = t2;
+            if (t2 > maxT) maxT = t2;
+        }
+        return OffsetUtil.getMultiOffset(offset, t, 1, imp.getImageStackSize(),
+                                         minT, maxT) + t - 1;
+    }
+
     private MedianOffsetParameter M_param = new MedianOffsetParameter();
     private ImagePlus M_medianImg;
     private List<Integer> M_ts;
     private int M_offset;
+    private SlidingMedian M_sliding;
 
     private static class MedianOffsetParams {
         public ImagePlus imp;
@@ -19,39 +19,213 @@
 
 package edu.pdx.imagej.reconstruction.reference;
 
-import java.util.Collection;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
 
 import ij.ImagePlus;
 
+// Finds the median of every pixel through a set of slices of a stack.
+//
+// A virtual stack might not fit in memory, so it is read a band of rows at a
+// time, with every selected slice's part of the band read before moving on to
+// the next band.  The bands are as tall as they can be while staying within
+// the memory given, so that a stack that fits in memory is read only once.
+// Stacks that are already in memory are done as one band.
+//
+// Within a band, the pixels are done a tile at a time, in parallel.  A tile is
+// a run of pixels in a row-major image, and all of its values are first copied
+// out of each slice in order so that the slices are read straight through.
+// Each pixel's values then sit next to each other, where the median is
+// selected without sorting them: 8-bit and 16-bit values are counted, a byte
+// at a time, and anything else is put through quickselect.  The medians are
+// exactly the same as sorting every pixel's values would give.
 class MedianUtil {
     static double[][] calculateMedian(ImagePlus imp, Collection<Integer> times)
+    {
+        // A quarter of the heap, at four bytes a value
+        return calculateMedian(imp, times,
+                               Runtime.getRuntime().maxMemory() / 16);
+    }
+    // The same, but for virtual stacks only keeping about maxValues values of
+    // the slices in memory at once
+    static double[][] calculateMedian(ImagePlus imp, Collection<Integer> times,
+                                      long maxValues)
     {
         final int width = imp.getWidth();
         final int height = imp.getHeight();
         final int size = times.size();
-        float[][][] slices = new float[size][][];
-        double[] values = new double[size];
-        int middle = size / 2;
-        boolean even = size % 2 == 0;
-        {
-            int i = 0;
-            for (int t : times) {
-                slices[i++] = imp.getImageStack().getProcessor(t).getFloatArray();
-            }
+        int rows = height;
+        if (imp.getImageStack().isVirtual()) {
+            rows = (int)Math.max(1, Math.min(height,
+                                             maxValues / size / width));
         }
         double[][] result = new double[width][height];
-        for (int y = 0; y < height; ++y) {
-            for (int x = 0; x < height; ++x) {
-                for (int i = 0; i < size; ++i) {
-                    values[i] = slices[i][x][y];
-                }
-                Arrays.sort(values);
-                if (even) result[x][y] = (values[middle - 1]
-                                       +  values[middle]) / 2.0;
-                else result[x][y] = values[middle];
+        try (BandReader reader = new BandReader(imp)) {
+            for (int y0 = 0; y0 < height; y0 += rows) {
+                final int y1 = Math.min(y0 + rows, height);
+                Object[] slices = new Object[size];
+                int i = 0;
+                for (int t : times) slices[i++] = reader.read(t, y0, y1);
+                medianBand(slices, width, y0, y1, result);
             }
         }
         return result;
     }
+
+    // Put the medians of the rows from y0 up to y1 into result, where slices
+    // has just those rows of each slice
+    private static void medianBand(Object[] slices, int width, int y0, int y1,
+                                   double[][] result)
+    {
+        final int size = slices.length;
+        final int pixels = width * (y1 - y0);
+        boolean counted = true;
+        for (Object slice : slices) counted &= !(slice instanceof float[]);
+        final boolean useCounts = counted;
+        final double[] medians = new double[pixels];
+        final int tileSize = Math.max(1, SC_tileValues / size);
+        final int tiles = (pixels + tileSize - 1) / tileSize;
+        IntStream.range(0, tiles).parallel().forEach(tile -> {
+            final int start = tile * tileSize;
+            final int end = Math.min(start + tileSize, pixels);
+            medianTile(slices, start, end, useCounts, medians);
+        });
+        for (int y = y0; y < y1; ++y) {
+            for (int x = 0; x < width; ++x) {
+                result[x][y] = medians[(y - y0) * width + x];
+            }
+        }
+    }
+    // Put the medians of the pixels from start to end into medians
+    private static void medianTile(Object[] slices, int start, int end,
+                                   boolean useCounts, double[] medians)
+    {
+        final int size = slices.length;
+        final int middle = size / 2;
+        final boolean even = size % 2 == 0;
+        // values[(p - start) * size + i] is pixel p of slice i, as an int that
+        // orders the same way as the pixel value.  If the values aren't being
+        // counted, that is always the key of the value as a float, in case
+        // slices of different types got mixed.
+        final int[] values = new int[(end - start) * size];
+        for (int i = 0; i < size; ++i) {
+            final Object slice = slices[i];
+            if (slice instanceof byte[]) {
+                final byte[] pixels = (byte[])slice;
+                for (int p = start; p < end; ++p) {
+                    final int value = pixels[p] & 0xff;
+                    values[(p - start) * size + i]
+                        = useCounts ? value : toKey(value);
+                }
+            }
+            else if (slice instanceof short[]) {
+                final short[] pixels = (short[])slice;
+                for (int p = start; p < end; ++p) {
+                    final int value = pixels[p] & 0xffff;
+                    values[(p - start) * size + i]
+                        = useCounts ? value : toKey(value);
+                }
+            }
+            else {
+                final float[] pixels = (float[])slice;
+                for (int p = start; p < end; ++p) {
+                    values[(p - start) * size + i] = toKey(pixels[p]);
+                }
+            }
+        }
+        final int[] high = new int[256];
+        final int[] low = new int[256];
+        for (int p = start; p < end; ++p) {
+            final int from = (p - start) * size;
+            double lower;
+            double upper;
+            if (useCounts) {
+                upper = countSelect(values, from, size, middle, high, low);
+                lower = even ? countSelect(values, from, size, middle - 1, high,
+                                           low)
+                             : upper;
+            }
+            else {
+                upper = fromKey(quickSelect(values, from, size, middle));
+                lower = upper;
+                if (even) {
+                    // Everything before the middle is now no bigger than it,
+                    // so the next smallest is the largest of those
+                    int max = values[from];
+                    for (int i = from + 1; i < from + middle; ++i) {
+                        if (values[i] > max) max = values[i];
+                    }
+                    lower = fromKey(max);
+                }
+            }
+            medians[p] = even ? (lower + upper) / 2.0 : upper;
+        }
+    }
+    // The value with the given rank among values[from] to values[from+size-1],
+    // all of which are between 0 and 65535.  The high bytes are counted to
+    // find which 256 values the answer is among, and then the low bytes of
+    // just those values are counted.
+    private static int countSelect(int[] values, int from, int size, int rank,
+                                   int[] high, int[] low)
+    {
+        Arrays.fill(high, 0);
+        Arrays.fill(low, 0);
+        for (int i = from; i < from + size; ++i) ++high[values[i] >>> 8];
+        int bucket = 0;
+        while (rank >= high[bucket]) rank -= high[bucket++];
+        for (int i = from; i < from + size; ++i) {
+            if (values[i] >>> 8 == bucket) ++low[values[i] & 0xff];
+        }
+        int value = 0;
+        while (rank >= low[value]) rank -= low[value++];
+        return (bucket << 8) | value;
+    }
+    // The value with the given rank among values[from] to values[from+size-1],
+    // partially sorting them so that everything before the rank is no bigger
+    // and everything after it is no smaller
+    private static int quickSelect(int[] values, int from, int size, int rank)
+    {
+        int left = from;
+        int right = from + size - 1;
+        final int target = from + rank;
+        while (left < right) {
+            // Median of three, to avoid the worst case on sorted values
+            final int mid = (left + right) >>> 1;
+            if (values[mid] < values[left]) swap(values, mid, left);
+            if (values[right] < values[left]) swap(values, right, left);
+            if (values[right] < values[mid]) swap(values, right, mid);
+            final int pivot = values[mid];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) ++i;
+                while (values[j] > pivot) --j;
+                if (i <= j) swap(values, i++, j--);
+            }
+            if (target <= j) right = j;
+            else if (target >= i) left = i;
+            else break;
+        }
+        return values[target];
+    }
+    private static void swap(int[] values, int i, int j)
+    {
+        final int tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
+    // An int that orders the same way that Float.compare orders floats
+    private static int toKey(float value)
+    {
+        final int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+    private static float fromKey(int key)
+    {
+        return Float.intBitsToFloat(key ^ ((key >> 31) & 0x7fffffff));
+    }
+
+    // About how many values are copied out for each tile
+    private static final int SC_tileValues = 1 << 16;
 }
@@ -19,6 +19,7 @@
 
 package edu.pdx.imagej.reconstruction.reference;
 
+import java.util.Arrays;
 import java.util.Collection;
 
 import ij.ImagePlus;
@@ -73,18 +74,9 @@ public class Offset extends AbstractReferencePlugin {
     public ReconstructionField getReferenceHolo(
         ConstReconstructionField field, int t)
     {
-        // This should maybe be cached, but is it worth it?  That would use up a
-        // lot of extra memory, and most of them should be a new calculation.
-
-        if (M_param != null) {
-            M_imp = M_param.getValue().imp;
-            M_offset = M_param.getValue().offset;
-        }
-        int offset = OffsetUtil.getOffset(M_offset, t, 1,
-                                           M_imp.getImageStackSize());
-        int finalT = t + offset;
+        readParams();
         float[][] floatArray = M_imp.getStack()
-                                     .getProcessor(finalT)
+                                     .getProcessor(frame(t))
                                      .getFloatArray();
         double[][] real = new double[floatArray.length][floatArray[0].length];
         double[][] imag = new double[real.length][real[0].length];
@@ -95,12 +87,35 @@ public class Offset extends AbstractReferencePlugin {
         }
         return new ReconstructionFieldImpl(real, imag);
     }
+    /** Get the image and the frame in it used as the reference hologram.  The
+     * offset is clamped to the image, so many time slices near the ends share
+     * a frame.
+     */
+    @Override
+    public Object referenceKey(int t)
+    {
+        readParams();
+        return Arrays.asList(M_imp, frame(t));
+    }
     @Override
     public OffsetParameter param()
     {
         return M_param;
     }
 
+    private void readParams()
+    {
+        if (M_param != null) {
+            M_imp = M_param.getValue().imp;
+            M_offset = M_param.getValue().offset;
+        }
+    }
+    private int frame(int t)
+    {
+        return t + OffsetUtil.getOffset(M_offset, t, 1,
+                                         M_imp.getImageStackSize());
+    }
+
     private OffsetParameter M_param;
     private ImagePlus M_imp;
     private int M_offset;
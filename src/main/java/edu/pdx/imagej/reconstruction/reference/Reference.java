@@ -20,14 +20,19 @@
 package edu.pdx.imagej.reconstruction.reference;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import ij.gui.Roi;
 
 import org.scijava.plugin.Plugin;
 import org.scijava.Priority;
 
+import edu.pdx.imagej.reconstruction.ConstComplexField;
 import edu.pdx.imagej.reconstruction.ConstReconstructionField;
 import edu.pdx.imagej.reconstruction.ReconstructionField;
 import edu.pdx.imagej.reconstruction.plugin.ReconstructionPlugin;
@@ -131,38 +136,81 @@ public class Reference extends HoldingSinglePlugin<ReferencePlugin>
             if (plugin instanceof Filter) M_filter = (Filter)plugin;
         }
     }
+    /** Forget about any reference hologram folded into another correction in a
+     * previous reconstruction.
+     */
+    @Override
+    public void processBeginning()
+    {
+        M_folded = false;
+        M_lastReference = null;
+        super.processBeginning();
+    }
     /** Apply the reference hologram.
+     * <p>
+     * The reference holograms are kept after being filtered and normalized,
+     * under the key given by {@link ReferencePlugin#referenceKey
+     * ReferencePlugin.referenceKey}.  Only the few most recently used are
+     * kept.  Reference holograms without a key are not kept, but if the
+     * plugin gives back one that was already filtered and normalized, it is
+     * not done again.
+     * <p>
+     * Nothing is done if the reference hologram was folded into another
+     * correction using {@link foldConstantReference}.
      */
     @Override
     public void processFilteredField(ReconstructionField field, int t)
     {
+        if (M_folded) return;
         if (M_live) {
-            M_phase = M_param.phase();
-            M_amplitude = M_param.amplitude();
-            M_useSameRoi = M_param.useSameRoi();
+            boolean phase = M_param.phase();
+            boolean amplitude = M_param.amplitude();
+            boolean useSameRoi = M_param.useSameRoi();
+            if (phase != M_phase || amplitude != M_amplitude
+                    || useSameRoi != M_useSameRoi) {
+                M_prepared.clear();
+            }
+            M_phase = phase;
+            M_amplitude = amplitude;
+            M_useSameRoi = useSameRoi;
         }
+        Object key = getPlugin().referenceKey(t);
         ReconstructionField referenceField
-            = getPlugin().getReferenceHolo(
-                            new ConstReconstructionField(field), t);
-        if (referenceField == null) return;
-        if (M_alreadyFiltered.add(referenceField)) {
-            if (M_useSameRoi && !getPlugin().dontUseSameRoi()) {
-                M_filter.filterField(referenceField);
-            }
-            else {
-                if (M_notSameFilter == null) {
-                    M_notSameFilter = new Filter();
-                    M_notSameFilter.getFilter(
-                        new ConstReconstructionField(referenceField),
-                        "Please select the ROI for the reference hologram and then "
-                        + "press OK.");
-                }
-                M_notSameFilter.filterField(referenceField);
+            = key == null ? null : M_prepared.get(key);
+        if (referenceField == null) {
+            referenceField = getPlugin().getReferenceHolo(
+                                new ConstReconstructionField(field), t);
+            if (referenceField == null) return;
+            if (!M_alreadyPrepared.contains(referenceField)) {
+                if (!prepare(referenceField)) return;
+                M_alreadyPrepared.add(referenceField);
             }
-            getReference(referenceField);
+            if (key != null) M_prepared.put(key, referenceField);
         }
+        M_lastReference = referenceField;
         field.field().multiplyInPlace(referenceField.field());
     }
+    /** Hand over the reference hologram to be applied as part of another
+     * correction, if it is the same for every time slice.  Multiplying each
+     * field by one combined correction takes one pass over the field instead
+     * of one pass for each correction.  If this returns the reference
+     * hologram, {@link processFilteredField processFilteredField} stops
+     * applying it for the rest of the reconstruction, so whoever called this
+     * must apply it instead.
+     * <p>
+     * The reference hologram must have been applied at least once already, so
+     * that it has been filtered and normalized.
+     *
+     * @return The filtered and normalized reference hologram, or <code>
+     *         null</code> if it isn't the same for every time slice or it
+     *         hasn't been found yet.
+     */
+    public ConstComplexField foldConstantReference()
+    {
+        if (M_lastReference == null || !getPlugin().isConstant()) return null;
+        M_folded = true;
+        return new ConstComplexField(M_lastReference.field());
+    }
     /** Returns a singleton list of <code>{@link
      * ReferencePlugin}.class</code>.
      */
@@ -174,6 +222,47 @@ public class Reference extends HoldingSinglePlugin<ReferencePlugin>
         return result;
     }
 
+    /** Returns whether or not the filter for the reference hologram could not
+     * be found.
+     *
+     * @return Whether or not the filter for the reference hologram could not
+     *         be found, or any of the held plugins has an error.
+     */
+    @Override
+    public boolean hasError()
+    {
+        return M_error || super.hasError();
+    }
+
+    // Filter and normalize a reference hologram.  If it has its own filter
+    // that hasn't been picked yet, it is picked the same way as the main
+    // filter: automatically if that is automatic, and by the user otherwise.
+    // Returns false if no filter could be found.
+    private boolean prepare(ReconstructionField referenceField)
+    {
+        if (M_useSameRoi && !getPlugin().dontUseSameRoi()) {
+            M_filter.filterField(referenceField);
+        }
+        else {
+            if (M_notSameFilter == null) {
+                M_notSameFilter = new Filter();
+                M_notSameFilter.setAutomatic(M_filter != null
+                                             && M_filter.getAutomatic());
+                M_notSameFilter.setDefaultMessage(
+                    "Please select the ROI for the reference hologram and then "
+                    + "press OK.");
+                M_notSameFilter.processOriginalHologram(
+                    new ConstReconstructionField(referenceField));
+            }
+            if (M_notSameFilter.hasError()) {
+                M_error = true;
+                return false;
+            }
+            M_notSameFilter.filterField(referenceField);
+        }
+        getReference(referenceField);
+        return true;
+    }
     void getReference(ReconstructionField hologram)
     {
         double[][] reference = hologram.field().getField();
@@ -217,6 +306,22 @@ public class Reference extends HoldingSinglePlugin<ReferencePlugin>
     private boolean M_phase = false;
     private boolean M_amplitude = false;
     private boolean M_live = false;
-    private HashSet<ReconstructionField> M_alreadyFiltered = new HashSet<>();
+    private boolean M_error = false;
+    private ReconstructionField M_lastReference;
+    private boolean M_folded = false;
+    // Every reference hologram that has been filtered and normalized, without
+    // keeping any of them alive
+    private final Set<ReconstructionField> M_alreadyPrepared
+        = Collections.newSetFromMap(new WeakHashMap<>());
+    // The filtered and normalized reference holograms, most recently used last
+    private final LinkedHashMap<Object, ReconstructionField> M_prepared
+        = new LinkedHashMap<Object, ReconstructionField>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(
+                Map.Entry<Object, ReconstructionField> eldest)
+            {
+                return size() > SC_preparedCache;
+            }
+        };
+    private static final int SC_preparedCache = 4;
     ReferenceParameter M_param; // Package private for testing
 }
@@ -50,6 +50,29 @@ public interface ReferencePlugin extends SubReconstructionPlugin {
      */
     ReconstructionField getReferenceHolo(ConstReconstructionField field,
                                            int t);
+    /** Get a key for the reference hologram that {@link getReferenceHolo
+     * getReferenceHolo} would return for a time slice.  {@link Reference}
+     * keeps the most recently used reference holograms after filtering them,
+     * so time slices that get the same key share one reference hologram and
+     * <code>getReferenceHolo</code> is not called again for them.  Keys are
+     * compared with <code>equals</code>.
+     * <p>
+     * It defaults to <code>null</code>, which means there is no key, and
+     * <code>getReferenceHolo</code> is called for every time slice.
+     *
+     * @param t The time slice used to get the field.
+     * @return The key, or <code>null</code> if there isn't one.
+     */
+    default Object referenceKey(int t) {return null;}
+    /** Whether the reference hologram is the same for every time slice.  If it
+     * is, {@link Reference} can fold it into other corrections that are the
+     * same for every time slice, so that each field is only multiplied once.
+     * It defaults to <code>false</code>.
+     *
+     * @return <code>true</code> if {@link getReferenceHolo getReferenceHolo}
+     *         does not depend on the field or the time slice.
+     */
+    default boolean isConstant() {return false;}
     /** Whether or not you want the option to use the same {@link
      * edu.pdx.imagej.reconstruction.filter.Filter Filter} as everything else.
      * It defaults to allowing the option.
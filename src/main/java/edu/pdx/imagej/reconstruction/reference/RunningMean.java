@@ -0,0 +1,207 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.reference;
+
+import org.scijava.Priority;
+import org.scijava.plugin.Plugin;
+
+import edu.pdx.imagej.dynamic_parameters.BoolParameter;
+import edu.pdx.imagej.dynamic_parameters.HoldingParameter;
+import edu.pdx.imagej.dynamic_parameters.IntParameter;
+
+import edu.pdx.imagej.reconstruction.ComplexField;
+import edu.pdx.imagej.reconstruction.ConstReconstructionField;
+import edu.pdx.imagej.reconstruction.ReconstructionField;
+import edu.pdx.imagej.reconstruction.ReconstructionFieldImpl;
+
+/** A {@link ReferencePlugin} that uses the mean of the most recent holograms
+ * being reconstructed as the reference hologram.  It can either be the mean of
+ * the last few holograms, or an exponentially weighted mean where older
+ * holograms matter less and less.  Either way, the mean is updated with each
+ * new hologram instead of being found again, so the time it takes doesn't
+ * depend on how many holograms are averaged.
+ * <p>
+ * The mean includes the hologram being reconstructed, and holograms are
+ * included in the order they are reconstructed.
+ */
+@Plugin(type = ReferencePlugin.class,
+        name = "Running Mean",
+        priority = Priority.VERY_HIGH * 0.995)
+public class RunningMean extends AbstractReferencePlugin {
+    /** Constructor intended for live use of the plugin.
+     */
+    public RunningMean()
+    {
+        M_param = new RunningMeanParameter();
+    }
+    /** Constructor intended for programmatic use of the plugin.
+     *
+     * @param frames How many holograms to average.  For an exponential mean,
+     *               each hologram is weighted 2 / (frames + 1), which makes
+     *               the center of the weights the same as a plain mean of that
+     *               many holograms.
+     * @param exponential Whether to use an exponentially weighted mean instead
+     *                    of a plain mean of the last <code>frames</code>
+     *                    holograms.
+     */
+    public RunningMean(int frames, boolean exponential)
+    {
+        M_frames = frames;
+        M_exponential = exponential;
+    }
+    @Override
+    public RunningMean duplicate()
+    {
+        if (M_param != null) readParam();
+        return new RunningMean(M_frames, M_exponential);
+    }
+    /** Start a new mean, forgetting the holograms from any earlier
+     * reconstruction.  The parameters are read here, so changing them during
+     * a reconstruction has no effect until the next one.
+     */
+    @Override
+    public void processBeginning()
+    {
+        if (M_param != null) readParam();
+        M_mean = null;
+        M_window = null;
+    }
+    /** Add the hologram to the mean.
+     *
+     * @param field The hologram being reconstructed.
+     * @param t Unused.
+     */
+    @Override
+    public void processHologram(ReconstructionField field, int t)
+    {
+        ComplexField hologram = field.field();
+        final int width = hologram.width();
+        final int height = hologram.height();
+        if (M_mean == null) {
+            M_mean = new double[width][height];
+            M_count = 0;
+            if (!M_exponential) {
+                M_window = new float[M_frames][width * height];
+                M_next = 0;
+            }
+        }
+        if (M_exponential) {
+            // The first hologram is the whole mean, so that it doesn't start
+            // out dark
+            final double weight = M_count == 0 ? 1 : 2.0 / (M_frames + 1);
+            for (int x = 0; x < width; ++x) {
+                for (int y = 0; y < height; ++y) {
+                    M_mean[x][y] += weight
+                        * (hologram.getReal(x, y) - M_mean[x][y]);
+                }
+            }
+        }
+        else {
+            // M_mean holds the sum, and the oldest hologram is swapped out
+            final boolean full = M_count >= M_frames;
+            final float[] slot = M_window[M_next];
+            for (int x = 0; x < width; ++x) {
+                for (int y = 0; y < height; ++y) {
+                    final int i = y * width + x;
+                    final float value = (float)hologram.getReal(x, y);
+                    if (full) M_mean[x][y] -= slot[i];
+                    M_mean[x][y] += value;
+                    slot[i] = value;
+                }
+            }
+            M_next = (M_next + 1) % M_frames;
+        }
+        ++M_count;
+    }
+    /** Get the reference hologram, which is the mean so far.
+     *
+     * @param field Unused.
+     * @param t Unused.
+     */
+    @Override
+    public ReconstructionField getReferenceHolo(
+        ConstReconstructionField field, int t)
+    {
+        if (M_mean == null) return null;
+        final int width = M_mean.length;
+        final int height = M_mean[0].length;
+        final double scale = M_exponential ? 1
+                           : 1.0 / Math.min(M_count, M_frames);
+        double[][] real = new double[width][height];
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height; ++y) {
+                real[x][y] = M_mean[x][y] * scale;
+            }
+        }
+        return new ReconstructionFieldImpl(real, new double[width][height]);
+    }
+    @Override
+    public RunningMeanParameter param()
+    {
+        return M_param;
+    }
+
+    private void readParam()
+    {
+        M_frames = M_param.getValue().frames;
+        M_exponential = M_param.getValue().exponential;
+    }
+
+    private RunningMeanParameter M_param;
+    private int M_frames;
+    private boolean M_exponential;
+    // The mean if exponential, or the sum of the window if not
+    private double[][] M_mean;
+    // The holograms in the window, row by row, if not exponential
+    private float[][] M_window;
+    private int M_next;
+    private int M_count;
+
+    private static class RunningMeanParams {
+        public int frames;
+        public boolean exponential;
+    }
+    static class RunningMeanParameter
+                 extends HoldingParameter<RunningMeanParams> {
+        public RunningMeanParameter()
+        {
+            super("RunningMeanParameter");
+        }
+        @Override
+        public void initialize()
+        {
+            M_frames = addParameter(new IntParameter(10, "Frames to average",
+                                                     "frames"));
+            M_frames.setBounds(1, Integer.MAX_VALUE);
+            M_exponential = addParameter(new BoolParameter(
+                "Exponentially weighted", false));
+        }
+        @Override
+        public RunningMeanParams getValue()
+        {
+            RunningMeanParams result = new RunningMeanParams();
+            result.frames = M_frames.getValue();
+            result.exponential = M_exponential.getValue();
+            return result;
+        }
+        private IntParameter M_frames;
+        private BoolParameter M_exponential;
+    }
+}
@@ -28,21 +28,41 @@ import edu.pdx.imagej.reconstruction.ReconstructionField;
 /** A {@link ReferencePlugin} that uses the current field as the reference
  * hologram.  The {@link edu.pdx.imagej.reconstruction.filter.Filter Filter}
  * needs to be different in this case.
+ * <p>
+ * The reference hologram is taken from the Fourier transform of the hologram
+ * before it is filtered, so the reference hologram is only filtered by its own
+ * filter, and the Fourier transform does not need to be computed again.
  */
 @Plugin(type = ReferencePlugin.class,
         name = "Self",
         priority = Priority.VERY_HIGH * 0.9)
 public class Self extends AbstractReferencePlugin {
-    /** Get the reference hologram.  This just copies the field.
+    /** Keep the Fourier transform of the hologram before it is filtered.
+     *
+     * @param field The hologram.
+     * @param t The time slice used to get the hologram.
+     */
+    @Override
+    public void processHologram(ReconstructionField field, int t)
+    {
+        M_hologram = field.copyFourier();
+        M_t = t;
+    }
+    /** Get the reference hologram.  This is the Fourier transform of the
+     * hologram kept from {@link processHologram processHologram}, or if that
+     * wasn't called for this time slice, a copy of the field.
      *
      * @param field The filtered field.
-     * @param t Unused.
+     * @param t The time slice used to get the field.
      */
     @Override
     public ReconstructionField getReferenceHolo(
         ConstReconstructionField field, int t)
     {
-        return field.copy();
+        ReconstructionField result = M_hologram;
+        M_hologram = null;
+        if (result == null || M_t != t) return field.copy();
+        return result;
     }
     @Override
     public Self duplicate()
@@ -55,4 +75,7 @@ public class Self extends AbstractReferencePlugin {
      */
     @Override
     public boolean dontUseSameRoi() {return true;}
+
+    private ReconstructionField M_hologram;
+    private int M_t;
 }
@@ -70,6 +70,12 @@ public class Single extends AbstractReferencePlugin {
     {
         return new Single(getReferenceHolo(null, 0).copy());
     }
+    /** Returns <code>true</code>.
+     *
+     * @return <code>true</code>.
+     */
+    @Override
+    public boolean isConstant() {return true;}
     /** Get the reference hologram.  It just returns the input image.
      *
      * @param field Unused.
@@ -0,0 +1,160 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.reference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.process.ImageProcessor;
+
+// The median of a window of slices of a stack that moves a little at a time.
+//
+// Each pixel keeps the values of every slice in the window, sorted.  When the
+// window moves, each slice that left is swapped for one that came in by
+// finding the old value with a binary search and sliding the values between
+// it and the new value's place over by one.  Moving the window by one slice
+// then costs a search and a short copy per pixel instead of sorting every
+// pixel's whole window again.  The medians are exactly what MedianUtil gives.
+//
+// That keeps every value of the window in memory for as long as this is used,
+// so it is only done when they fit in the same budget MedianUtil uses.
+// Otherwise, each median is left to MedianUtil, which reads the slices a band
+// at a time.
+class SlidingMedian {
+    SlidingMedian(ImagePlus imp)
+    {
+        // The same as MedianUtil: a quarter of the heap, at four bytes a value
+        this(imp, Runtime.getRuntime().maxMemory() / 16);
+    }
+    // The same, but only keeping windows of up to maxValues values
+    SlidingMedian(ImagePlus imp, long maxValues)
+    {
+        M_imp = imp;
+        M_width = imp.getWidth();
+        M_height = imp.getHeight();
+        M_maxValues = maxValues;
+    }
+    // The image this takes the median of
+    ImagePlus image() {return M_imp;}
+    // The median of the slices in times, in the same layout as
+    // MedianUtil.calculateMedian
+    double[][] median(Collection<Integer> times)
+    {
+        if ((long)M_width * M_height * times.size() > M_maxValues) {
+            M_windows = null;
+            M_times = null;
+            return MedianUtil.calculateMedian(M_imp, times, M_maxValues);
+        }
+        ArrayList<Integer> leaving = new ArrayList<>();
+        ArrayList<Integer> coming = new ArrayList<>();
+        if (M_windows != null && times.size() == M_times.size()) {
+            difference(M_times, times, leaving);
+            difference(times, M_times, coming);
+        }
+        // Rebuilding is cheaper once most of the window has changed
+        boolean rebuild = M_windows == null || times.size() != M_times.size()
+                          || leaving.size() * 2 > times.size();
+        ImageStack stack = M_imp.getImageStack();
+        for (int i = 0; !rebuild && i < leaving.size(); ++i) {
+            rebuild = !replace(stack.getProcessor(leaving.get(i)),
+                               stack.getProcessor(coming.get(i)));
+        }
+        if (rebuild) rebuild(times);
+        M_times = new ArrayList<>(times);
+
+        final int size = times.size();
+        final int middle = size / 2;
+        final boolean even = size % 2 == 0;
+        double[][] result = new double[M_width][M_height];
+        for (int y = 0; y < M_height; ++y) {
+            for (int x = 0; x < M_width; ++x) {
+                final float[] window = M_windows[y * M_width + x];
+                if (even) result[x][y] = ((double)window[middle - 1]
+                                       +  window[middle]) / 2.0;
+                else result[x][y] = window[middle];
+            }
+        }
+        return result;
+    }
+
+    // Read every slice in times and sort each pixel's values
+    private void rebuild(Collection<Integer> times)
+    {
+        final int size = times.size();
+        final int pixels = M_width * M_height;
+        M_windows = new float[pixels][size];
+        ImageStack stack = M_imp.getImageStack();
+        int i = 0;
+        for (int t : times) {
+            ImageProcessor proc = stack.getProcessor(t);
+            for (int p = 0; p < pixels; ++p) M_windows[p][i] = proc.getf(p);
+            ++i;
+        }
+        for (float[] window : M_windows) Arrays.sort(window);
+    }
+    // Swap every pixel's value from outgoing for its value from incoming.
+    // This returns false if outgoing's values weren't there, which means the
+    // stack was changed, and then the windows must be rebuilt.
+    private boolean replace(ImageProcessor outgoing, ImageProcessor incoming)
+    {
+        final int pixels = M_width * M_height;
+        for (int p = 0; p < pixels; ++p) {
+            final float[] window = M_windows[p];
+            final float old = outgoing.getf(p);
+            final float value = incoming.getf(p);
+            int from = Arrays.binarySearch(window, old);
+            if (from < 0) return false;
+            // The insertion point, if value were not there
+            int to = Arrays.binarySearch(window, value);
+            if (to < 0) to = -to - 1;
+            if (to > from) {
+                // Everything after the old value up to the new one moves down
+                --to;
+                System.arraycopy(window, from + 1, window, from, to - from);
+            }
+            else if (to < from) {
+                System.arraycopy(window, to, window, to + 1, from - to);
+            }
+            window[to] = value;
+        }
+        return true;
+    }
+    // Put into result every value of a that is not in b, counting repeats
+    private static void difference(Collection<Integer> a, Collection<Integer> b,
+                                   List<Integer> result)
+    {
+        ArrayList<Integer> remaining = new ArrayList<>(b);
+        for (Integer t : a) {
+            if (!remaining.remove(t)) result.add(t);
+        }
+    }
+
+    private final ImagePlus M_imp;
+    private final int M_width;
+    private final int M_height;
+    private final long M_maxValues;
+    // The sorted values of each pixel, with pixels row by row
+    private float[][] M_windows;
+    private ArrayList<Integer> M_times;
+}
@@ -0,0 +1,206 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+/** Reads parts of the chunked volumes that {@link Result} writes when {@link
+ * ResultOptions#dirStructure} is {@link ResultOptions.DirStructure#Chunked
+ * Chunked}.
+ * <p>
+ * Each output is an N5 dataset, with dimensions x, y, z, and t, so it can also
+ * be opened by anything that reads N5.  Reading a region here only reads the
+ * chunks that the region touches.
+ */
+public class ChunkedReader {
+    /** Open a dataset.
+     *
+     * @param dataset The directory of the dataset, such as
+     *                <code>saveDirectory/Amplitude</code>
+     * @throws IOException If the dataset's attributes can't be read
+     */
+    public ChunkedReader(Path dataset) throws IOException
+    {
+        M_dataset = dataset;
+        String json = new String(Files.readAllBytes(
+            dataset.resolve("attributes.json")), StandardCharsets.UTF_8);
+        int[] dimensions = readInts(json, "dimensions");
+        int[] blockSize = readInts(json, "blockSize");
+        if (dimensions.length != 4 || blockSize.length != 4) {
+            throw new IOException(dataset + " is not a 4D dataset.");
+        }
+        M_width = dimensions[0];
+        M_height = dimensions[1];
+        M_zSize = dimensions[2];
+        M_tSize = dimensions[3];
+        M_chunkWidth = blockSize[0];
+        M_chunkHeight = blockSize[1];
+        M_chunkDepth = blockSize[2];
+        Matcher type = Pattern.compile("\"dataType\"\\s*:\\s*\"(\\w+)\"")
+                              .matcher(json);
+        if (!type.find()) throw new IOException("No data type in " + dataset);
+        if (type.group(1).equals("uint8")) M_bitDepth = 8;
+        else if (type.group(1).equals("uint16")) M_bitDepth = 16;
+        else if (type.group(1).equals("float32")) M_bitDepth = 32;
+        else throw new IOException("Unknown data type " + type.group(1));
+        M_compressed = Pattern.compile(
+            "\"compression\"\\s*:\\s*\\{[^}]*\"type\"\\s*:\\s*\"gzip\"")
+            .matcher(json).find();
+    }
+    /** Get the width of the volume. */
+    public int width() {return M_width;}
+    /** Get the height of the volume. */
+    public int height() {return M_height;}
+    /** Get the number of z slices. */
+    public int zSize() {return M_zSize;}
+    /** Get the number of time slices. */
+    public int tSize() {return M_tSize;}
+    /** Get the bit depth of the values. */
+    public int bitDepth() {return M_bitDepth;}
+    /** Read a rectangle of one slice.
+     *
+     * @param tIndex The index of the time slice
+     * @param zIndex The index of the z slice
+     * @param x The left of the rectangle
+     * @param y The top of the rectangle
+     * @param width The width of the rectangle
+     * @param height The height of the rectangle
+     * @return The rectangle, as a processor of the volume's bit depth.  Parts
+     *         that were never written are zero.
+     * @throws IOException If a chunk couldn't be read
+     */
+    public ImageProcessor read(int tIndex, int zIndex, int x, int y,
+                               int width, int height) throws IOException
+    {
+        if (x < 0 || y < 0 || width <= 0 || height <= 0
+                || x + width > M_width || y + height > M_height
+                || tIndex < 0 || tIndex >= M_tSize
+                || zIndex < 0 || zIndex >= M_zSize) {
+            throw new IndexOutOfBoundsException("The region is not inside the "
+                + "volume.");
+        }
+        ImageProcessor result;
+        if (M_bitDepth == 8) result = new ByteProcessor(width, height);
+        else if (M_bitDepth == 16) result = new ShortProcessor(width, height);
+        else result = new FloatProcessor(width, height);
+        Object pixels = result.getPixels();
+        final int zBlock = zIndex / M_chunkDepth;
+        for (int cy = y / M_chunkHeight; cy <= (y + height - 1) / M_chunkHeight;
+                ++cy) {
+            for (int cx = x / M_chunkWidth;
+                    cx <= (x + width - 1) / M_chunkWidth; ++cx) {
+                readChunk(pixels, cx, cy, zBlock, zIndex % M_chunkDepth,
+                          tIndex, x, y, width, height);
+            }
+        }
+        return result;
+    }
+
+    private void readChunk(Object pixels, int cx, int cy, int zBlock,
+                           int zOffset, int tIndex, int x, int y, int width,
+                           int height) throws IOException
+    {
+        Path path = M_dataset.resolve(Integer.toString(cx))
+                             .resolve(Integer.toString(cy))
+                             .resolve(Integer.toString(zBlock))
+                             .resolve(Integer.toString(tIndex));
+        byte[] data;
+        int chunkWidth;
+        int chunkHeight;
+        try (DataInputStream in
+                = new DataInputStream(Files.newInputStream(path))) {
+            if (in.readShort() != 0 || in.readShort() != 4) {
+                throw new IOException(path + " is not a 4D chunk.");
+            }
+            chunkWidth = in.readInt();
+            chunkHeight = in.readInt();
+            int depth = in.readInt();
+            in.readInt();
+            data = new byte[chunkWidth * chunkHeight * depth
+                            * (M_bitDepth / 8)];
+            InputStream body = M_compressed ? new GZIPInputStream(in) : in;
+            new DataInputStream(body).readFully(data);
+        }
+        catch (NoSuchFileException e) {
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        final int x0 = cx * M_chunkWidth;
+        final int y0 = cy * M_chunkHeight;
+        final int left = Math.max(x, x0);
+        final int right = Math.min(x + width, x0 + chunkWidth);
+        final int top = Math.max(y, y0);
+        final int bottom = Math.min(y + height, y0 + chunkHeight);
+        for (int j = top; j < bottom; ++j) {
+            final int in = (zOffset * chunkHeight + j - y0) * chunkWidth
+                           + left - x0;
+            final int out = (j - y) * width + left - x;
+            for (int i = 0; i < right - left; ++i) {
+                if (M_bitDepth == 8) {
+                    ((byte[])pixels)[out + i] = buf.get(in + i);
+                }
+                else if (M_bitDepth == 16) {
+                    ((short[])pixels)[out + i] = buf.getShort(2 * (in + i));
+                }
+                else {
+                    ((float[])pixels)[out + i] = buf.getFloat(4 * (in + i));
+                }
+            }
+        }
+    }
+    private static int[] readInts(String json, String key) throws IOException
+    {
+        Matcher matcher = Pattern.compile(
+            "\"" + key + "\"\\s*:\\s*\\[([^\\]]*)\\]").matcher(json);
+        if (!matcher.find()) throw new IOException("No " + key + " found.");
+        String[] values = matcher.group(1).split(",");
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            result[i] = Integer.parseInt(values[i].trim());
+        }
+        return result;
+    }
+
+    private final Path M_dataset;
+    private final int M_width;
+    private final int M_height;
+    private final int M_zSize;
+    private final int M_tSize;
+    private final int M_chunkWidth;
+    private final int M_chunkHeight;
+    private final int M_chunkDepth;
+    private final int M_bitDepth;
+    private final boolean M_compressed;
+}
@@ -0,0 +1,224 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.zip.GZIPOutputStream;
+
+import ij.measure.Calibration;
+import ij.process.ImageProcessor;
+
+// Writes one output as a chunked (t, z, y, x) volume, laid out as an N5
+// dataset so that other tools can read it too.  The dataset is a directory
+// with an attributes.json describing it, and each chunk is its own file at
+// x/y/z/t (in chunk coordinates) under it, so that nobody ever waits on
+// anybody else to write, and reading part of the volume only reads the chunks
+// it touches.
+//
+// Chunks are SC_chunkSize pixels on a side and SC_chunkDepth z slices deep.
+// Slices are held on to until every slice of their chunks has come in, then
+// each chunk is encoded (and compressed, if wanted) and written in the pool.
+class ChunkedWriter {
+    ChunkedWriter(Path dataset, int width, int height, int bitDepth,
+                  boolean compress, int[] ts, double[] zs, Calibration cal,
+                  WriterPool pool) throws IOException
+    {
+        M_dataset = dataset;
+        M_width = width;
+        M_height = height;
+        M_zSize = zs.length;
+        M_bitDepth = bitDepth;
+        M_compress = compress;
+        M_pool = pool;
+        StringBuilder attributes = new StringBuilder();
+        attributes.append("{\"dimensions\":[").append(width).append(',')
+                  .append(height).append(',').append(zs.length).append(',')
+                  .append(ts.length).append("],");
+        attributes.append("\"blockSize\":[").append(SC_chunkSize)
+                  .append(',').append(SC_chunkSize).append(',')
+                  .append(SC_chunkDepth).append(",1],");
+        attributes.append("\"dataType\":\"").append(dataType(bitDepth))
+                  .append("\",");
+        attributes.append("\"compression\":{\"type\":\"")
+                  .append(compress ? "gzip" : "raw").append("\"},");
+        attributes.append("\"resolution\":[")
+                  .append(number(cal.pixelWidth, "pixel width")).append(',')
+                  .append(number(cal.pixelHeight, "pixel height"))
+                  .append(",1,1],");
+        String unit = string(cal.getUnit());
+        attributes.append("\"units\":[").append(unit).append(',')
+                  .append(unit).append(",\"um\",\"\"],");
+        attributes.append("\"ts\":[");
+        for (int i = 0; i < ts.length; ++i) {
+            if (i != 0) attributes.append(',');
+            attributes.append(ts[i]);
+        }
+        attributes.append("],\"zs\":[");
+        for (int i = 0; i < zs.length; ++i) {
+            if (i != 0) attributes.append(',');
+            attributes.append(number(zs[i], "z"));
+        }
+        attributes.append("]}");
+        Files.createDirectories(dataset);
+        Path root = dataset.getParent();
+        if (root != null) writeAttributes(root, "{\"n5\":\"2.0.0\"}");
+        writeAttributes(dataset, attributes.toString());
+    }
+    // Add the slice at these indices.  Once this completes a block of z
+    // slices, its chunks are given to the pool to write.  This must only be
+    // called from one thread.
+    void addSlice(int tIndex, int zIndex, ImageProcessor proc)
+        throws IOException
+    {
+        final int zBlock = zIndex / SC_chunkDepth;
+        final long key = (long)tIndex * M_zSize + zBlock;
+        final int start = zBlock * SC_chunkDepth;
+        final int depth = Math.min(SC_chunkDepth, M_zSize - start);
+        Object[] slices = M_pending.get(key);
+        if (slices == null) {
+            slices = new Object[depth];
+            M_pending.put(key, slices);
+        }
+        slices[zIndex - start] = proc.getPixels();
+        for (Object slice : slices) {
+            if (slice == null) return;
+        }
+        M_pending.remove(key);
+        final Object[] block = slices;
+        for (int y = 0; y < M_height; y += SC_chunkSize) {
+            for (int x = 0; x < M_width; x += SC_chunkSize) {
+                final int chunkX = x;
+                final int chunkY = y;
+                M_pool.submit(() -> writeChunk(block, chunkX, chunkY,
+                                               zBlock, tIndex));
+            }
+        }
+    }
+
+    // Called from the pool
+    private void writeChunk(Object[] slices, int x0, int y0, int zBlock,
+                            int tIndex) throws IOException
+    {
+        final int chunkWidth = Math.min(SC_chunkSize, M_width - x0);
+        final int chunkHeight = Math.min(SC_chunkSize, M_height - y0);
+        final int bytes = M_bitDepth / 8;
+        ByteBuffer data = ByteBuffer.allocate(
+            chunkWidth * chunkHeight * slices.length * bytes);
+        for (Object slice : slices) {
+            for (int y = y0; y < y0 + chunkHeight; ++y) {
+                final int row = y * M_width;
+                if (M_bitDepth == 8) {
+                    data.put((byte[])slice, row + x0, chunkWidth);
+                }
+                else if (M_bitDepth == 16) {
+                    data.asShortBuffer().put((short[])slice, row + x0,
+                                             chunkWidth);
+                    data.position(data.position() + chunkWidth * 2);
+                }
+                else {
+                    data.asFloatBuffer().put((float[])slice, row + x0,
+                                             chunkWidth);
+                    data.position(data.position() + chunkWidth * 4);
+                }
+            }
+        }
+        Path dir = M_dataset.resolve(Integer.toString(x0 / SC_chunkSize))
+                            .resolve(Integer.toString(y0 / SC_chunkSize))
+                            .resolve(Integer.toString(zBlock));
+        Files.createDirectories(dir);
+        try (DataOutputStream out = new DataOutputStream(
+                Files.newOutputStream(dir.resolve(Integer.toString(tIndex)))))
+        {
+            // Default mode, four dimensions, and the size of this chunk
+            out.writeShort(0);
+            out.writeShort(4);
+            out.writeInt(chunkWidth);
+            out.writeInt(chunkHeight);
+            out.writeInt(slices.length);
+            out.writeInt(1);
+            if (M_compress) {
+                GZIPOutputStream gzip = new GZIPOutputStream(out);
+                gzip.write(data.array());
+                gzip.finish();
+            }
+            else out.write(data.array());
+        }
+    }
+    private static void writeAttributes(Path dir, String json)
+        throws IOException
+    {
+        try (OutputStream out
+                = Files.newOutputStream(dir.resolve("attributes.json"))) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    // A JSON string holding str, escaping anything that can't appear in one
+    // as is
+    static String string(String str)
+    {
+        StringBuilder result = new StringBuilder("\"");
+        for (int i = 0; i < str.length(); ++i) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\') result.append('\\').append(c);
+            else if (c < 0x20) {
+                result.append(String.format("\\u%04x", (int)c));
+            }
+            else result.append(c);
+        }
+        return result.append('"').toString();
+    }
+    // A JSON number holding value.  JSON has no infinities or NaN, so those
+    // can't be saved at all.
+    static String number(double value, String what) throws IOException
+    {
+        if (!Double.isFinite(value)) {
+            throw new IOException("The " + what + " " + value
+                + " can't be saved in attributes.json.");
+        }
+        return Double.toString(value);
+    }
+    static String dataType(int bitDepth)
+    {
+        if (bitDepth == 8) return "uint8";
+        if (bitDepth == 16) return "uint16";
+        return "float32";
+    }
+
+    static final int SC_chunkSize = 256;
+    static final int SC_chunkDepth = 4;
+
+    private final Path M_dataset;
+    private final int M_width;
+    private final int M_height;
+    private final int M_zSize;
+    private final int M_bitDepth;
+    private final boolean M_compress;
+    private final WriterPool M_pool;
+    // The slices of each block of z slices that isn't finished yet, by
+    // tIndex * zSize + zBlock
+    private final HashMap<Long, Object[]> M_pending = new HashMap<>();
+}
@@ -0,0 +1,182 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import edu.pdx.imagej.reconstruction.FastMath;
+
+// Turns a complex field into the pixels of the images that Result outputs.
+class ExtractUtil {
+    // Fill each of the ImageJ pixel arrays (row by row, like FloatProcessor
+    // uses) from field, which is laid out like ComplexField.getField().  Any
+    // of the arrays may be null if that output is not wanted.  Everything is
+    // done in one pass over the field.  If approximate is true, the phase comes
+    // from FastMath.atan2 instead of Math.atan2.
+    //
+    // The field is stored in columns but the pixels are stored in rows, so the
+    // field is walked a block of columns at a time.  That way both the reads
+    // and the writes stay within a few cache lines.
+    static void extract(double[][] field, float[] amplitude, float[] phase,
+                        float[] real, float[] imaginary, boolean approximate)
+    {
+        final int width = field.length;
+        final int height = field[0].length / 2;
+        for (int x0 = 0; x0 < width; x0 += SC_block) {
+            final int x1 = Math.min(x0 + SC_block, width);
+            for (int y = 0; y < height; ++y) {
+                final int row = y * width;
+                for (int x = x0; x < x1; ++x) {
+                    final double r = field[x][2 * y];
+                    final double i = field[x][2 * y + 1];
+                    if (amplitude != null) {
+                        amplitude[row + x] = (float)Math.sqrt(r*r + i*i);
+                    }
+                    if (phase != null) {
+                        phase[row + x] = (float)(approximate
+                            ? FastMath.atan2(i, r) : Math.atan2(i, r));
+                    }
+                    if (real != null) real[row + x] = (float)r;
+                    if (imaginary != null) imaginary[row + x] = (float)i;
+                }
+            }
+        }
+    }
+
+    // The part of field starting at (x, y) that is width by height pixels
+    // after binning, where each pixel is the mean of a bin by bin square of
+    // the field's pixels.  The result is laid out like field.  The complex
+    // values are what are averaged, so that every output of a binned pixel
+    // comes from the same value.
+    static double[][] reduce(double[][] field, int x, int y, int width,
+                             int height, int bin)
+    {
+        double[][] result = new double[width][height * 2];
+        final double scale = 1.0 / (bin * bin);
+        for (int i = 0; i < width; ++i) {
+            double[] out = result[i];
+            for (int dx = 0; dx < bin; ++dx) {
+                final double[] in = field[x + i * bin + dx];
+                for (int j = 0; j < height; ++j) {
+                    final int start = 2 * (y + j * bin);
+                    double r = 0;
+                    double im = 0;
+                    for (int dy = 0; dy < 2 * bin; dy += 2) {
+                        r += in[start + dy];
+                        im += in[start + dy + 1];
+                    }
+                    out[2 * j] += r;
+                    out[2 * j + 1] += im;
+                }
+            }
+            if (bin != 1) {
+                for (int j = 0; j < 2 * height; ++j) out[j] *= scale;
+            }
+        }
+        return result;
+    }
+
+    // The same as extract, but straight into 8-bit or 16-bit pixels with a
+    // fixed range, so that no float pixels are ever made.  pixels has the
+    // amplitude, phase, real, and imaginary pixel arrays, in that order, with
+    // null for the ones not wanted, and they must all be byte[] or all be
+    // short[].  Output k maps min[k] to 0 and max[k] to 255 (or 65535),
+    // rounding and clamping the same way ImageJ does when it converts a
+    // FloatProcessor.  That includes going through float first, so that the
+    // pixels are exactly what converting extract's pixels would give.
+    static void quantize(double[][] field, Object[] pixels, double[] min,
+                         double[] max, boolean approximate)
+    {
+        final int width = field.length;
+        final int height = field[0].length / 2;
+        boolean bytes = false;
+        for (Object p : pixels) if (p != null) bytes = p instanceof byte[];
+        // ImageJ splits the range into 256 steps for 8-bit, but 65535 for
+        // 16-bit
+        final double steps = bytes ? 256 : 65535;
+        final double top = bytes ? 255 : 65535;
+        final double[] low = new double[4];
+        final double[] scale = new double[4];
+        for (int k = 0; k < 4; ++k) {
+            low[k] = (float)min[k];
+            final double high = (float)max[k];
+            scale[k] = high == low[k] ? 1 : steps / (high - low[k]);
+        }
+        final double[] values = new double[4];
+        for (int x0 = 0; x0 < width; x0 += SC_block) {
+            final int x1 = Math.min(x0 + SC_block, width);
+            for (int y = 0; y < height; ++y) {
+                final int row = y * width;
+                for (int x = x0; x < x1; ++x) {
+                    final double r = field[x][2 * y];
+                    final double i = field[x][2 * y + 1];
+                    if (pixels[0] != null) values[0] = Math.sqrt(r*r + i*i);
+                    if (pixels[1] != null) {
+                        values[1] = approximate ? FastMath.atan2(i, r)
+                                                : Math.atan2(i, r);
+                    }
+                    values[2] = r;
+                    values[3] = i;
+                    for (int k = 0; k < 4; ++k) {
+                        if (pixels[k] == null) continue;
+                        double value
+                            = ((float)values[k] - low[k]) * scale[k] + 0.5;
+                        if (value < 0) value = 0;
+                        if (value > top) value = top;
+                        if (bytes) {
+                            ((byte[])pixels[k])[row + x] = (byte)(int)value;
+                        }
+                        else {
+                            ((short[])pixels[k])[row + x] = (short)(int)value;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Fold the amplitude of field into running z-projections, laid out like
+    // extract's pixels.  max gets the largest amplitude so far, depth gets the
+    // z of that largest amplitude, and sum gets the sum of the amplitudes.  If
+    // first is true, the projections are started over from this field.
+    static void project(double[][] field, float z, float[] max, float[] depth,
+                        float[] sum, boolean first)
+    {
+        final int width = field.length;
+        final int height = field[0].length / 2;
+        for (int x0 = 0; x0 < width; x0 += SC_block) {
+            final int x1 = Math.min(x0 + SC_block, width);
+            for (int y = 0; y < height; ++y) {
+                final int row = y * width;
+                for (int x = x0; x < x1; ++x) {
+                    final double r = field[x][2 * y];
+                    final double i = field[x][2 * y + 1];
+                    final float amp = (float)Math.sqrt(r*r + i*i);
+                    final int index = row + x;
+                    if (first || amp > max[index]) {
+                        max[index] = amp;
+                        depth[index] = z;
+                    }
+                    sum[index] = first ? amp : sum[index] + amp;
+                }
+            }
+        }
+    }
+
+    private static final int SC_block = 64;
+}
@@ -0,0 +1,72 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+// ImgLib2 views of a lazy result.  The image is (x, y, z, t), and each cell is
+// one whole slice, which comes from the same Planes as the lazy stacks, so a
+// slice is only ever reconstructed once no matter which of them asks for it.
+// The cells wrap the slices' pixels without copying them.
+class LazyCells {
+    static Img<?> create(int width, int height, int zSize, int tSize,
+                         int bitDepth, LazyStack.Planes planes, int output)
+    {
+        CellGrid grid = new CellGrid(new long[]{width, height, zSize, tSize},
+                                     new int[]{width, height, 1, 1});
+        if (bitDepth == 8) {
+            return new LazyCellImg<UnsignedByteType, ByteArray>(grid,
+                new UnsignedByteType(), index -> cell(width, height, zSize,
+                    index, new ByteArray((byte[])planes.get((int)index + 1,
+                                                           output)
+                                                       .getPixels())));
+        }
+        if (bitDepth == 16) {
+            return new LazyCellImg<UnsignedShortType, ShortArray>(grid,
+                new UnsignedShortType(), index -> cell(width, height, zSize,
+                    index, new ShortArray((short[])planes.get((int)index + 1,
+                                                             output)
+                                                         .getPixels())));
+        }
+        return new LazyCellImg<FloatType, FloatArray>(grid, new FloatType(),
+            index -> cell(width, height, zSize, index,
+                new FloatArray((float[])planes.get((int)index + 1, output)
+                                              .getPixels())));
+    }
+
+    // Cells are numbered with z changing fastest, the same as the slices of
+    // the stacks, minus one.
+    private static <A> Cell<A> cell(int width, int height, int zSize,
+                                    long index, A data)
+    {
+        return new Cell<>(new int[]{width, height, 1, 1},
+                          new long[]{0, 0, index % zSize, index / zSize},
+                          data);
+    }
+}
@@ -0,0 +1,131 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import ij.IJ;
+import ij.VirtualStack;
+import ij.process.ImageProcessor;
+
+// A virtual stack whose slices are only reconstructed when ImageJ asks for
+// them.  All of the outputs (amplitude, phase, and so on) come from the same
+// reconstruction, so the stacks for each output share their Planes, which
+// reconstructs a slice once for all of them and keeps the most recently used
+// slices so that scrolling back and forth is smooth.
+class LazyStack extends VirtualStack {
+    // The slices of every output, shared between the stacks.
+    static class Planes {
+        // compute returns every output of slice n (starting from one), with
+        // null for the outputs that aren't used.  Up to cacheSize slices are
+        // kept.
+        Planes(IntFunction<ImageProcessor[]> compute, int cacheSize)
+        {
+            M_compute = compute;
+            M_cache = new LinkedHashMap<Integer, ImageProcessor[]>(
+                16, 0.75f, true) {
+                @Override protected boolean removeEldestEntry(
+                    Map.Entry<Integer, ImageProcessor[]> eldest)
+                {
+                    return size() > cacheSize;
+                }
+            };
+        }
+        synchronized ImageProcessor get(int n, int output)
+        {
+            ImageProcessor[] result = M_cache.get(n);
+            if (result == null) {
+                result = M_compute.apply(n);
+                M_cache.put(n, result);
+            }
+            return result[output];
+        }
+
+        private final IntFunction<ImageProcessor[]> M_compute;
+        private final LinkedHashMap<Integer, ImageProcessor[]> M_cache;
+    }
+
+    // output is the index of this stack's output in what planes computes.
+    // There is one label for each slice.
+    LazyStack(int width, int height, int bitDepth, Planes planes, int output,
+              String[] labels)
+    {
+        super(width, height, null, null);
+        M_bitDepth = bitDepth;
+        M_planes = planes;
+        M_output = output;
+        M_labels = labels;
+    }
+
+    @Override public ImageProcessor getProcessor(int n)
+    {
+        checkSlice(n);
+        return M_planes.get(n, M_output);
+    }
+    @Override public Object getPixels(int n)
+    {
+        return getProcessor(n).getPixels();
+    }
+    @Override public void setPixels(Object pixels, int n)
+    {
+        getProcessor(n).setPixels(pixels);
+    }
+    @Override public void addSlice(String label, ImageProcessor proc)
+    {
+        IJ.error("Slices can't be added to a lazy result stack.");
+    }
+    @Override public void addSlice(String label, Object pixels)
+    {
+        IJ.error("Slices can't be added to a lazy result stack.");
+    }
+    @Override public void deleteSlice(int n)
+    {
+        IJ.error("Slices can't be removed from a lazy result stack.");
+    }
+    @Override public int getSize() {return M_labels.length;}
+    @Override public String getSliceLabel(int n)
+    {
+        checkSlice(n);
+        return M_labels[n - 1];
+    }
+    @Override public void setSliceLabel(String label, int n)
+    {
+        checkSlice(n);
+        M_labels[n - 1] = label;
+    }
+    @Override public int getBitDepth() {return M_bitDepth;}
+    @Override public Object[] getImageArray() {return null;}
+    @Override public String getDirectory() {return null;}
+    @Override public String getFileName(int n) {return null;}
+
+    private void checkSlice(int n)
+    {
+        if (n < 1 || n > M_labels.length) {
+            throw new IllegalArgumentException("Argument out of range: " + n);
+        }
+    }
+
+    private final int M_bitDepth;
+    private final Planes M_planes;
+    private final int M_output;
+    private final String[] M_labels;
+}
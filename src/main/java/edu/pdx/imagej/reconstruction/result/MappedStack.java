@@ -0,0 +1,180 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import ij.IJ;
+import ij.VirtualStack;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+// A stack whose pixels live in a memory-mapped scratch file instead of on the
+// heap.  Slices are added in order, just like an ImageStack, but ImageJ sees it
+// as a virtual stack, so only the slices that are being looked at are read
+// back into memory.  The operating system decides how much of the file stays
+// in RAM, so the stack can be much larger than the heap.
+//
+// The scratch file is deleted as soon as it is mapped where the operating
+// system allows it, and when ImageJ exits otherwise.
+class MappedStack extends VirtualStack {
+    // Create a stack with room for size slices.  bitDepth must be 8, 16, or
+    // 32.
+    MappedStack(int width, int height, int bitDepth, int size)
+        throws IOException
+    {
+        super(width, height, null, null);
+        M_bitDepth = bitDepth;
+        M_size = size;
+        M_labels = new String[size];
+        M_sliceBytes = width * height * (bitDepth / 8);
+        // A single mapping can't be more than 2GB, so the file is mapped in
+        // chunks that each hold a whole number of slices.
+        M_slicesPerChunk = Math.max(1, Integer.MAX_VALUE / M_sliceBytes);
+        int chunks = (size + M_slicesPerChunk - 1) / M_slicesPerChunk;
+        M_chunks = new MappedByteBuffer[chunks];
+        File file = File.createTempFile("reconstruction", ".raw");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            for (int i = 0; i < chunks; ++i) {
+                int slices = Math.min(M_slicesPerChunk,
+                                      size - i * M_slicesPerChunk);
+                M_chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    (long)i * M_slicesPerChunk * M_sliceBytes,
+                    (long)slices * M_sliceBytes);
+            }
+        }
+        finally {
+            if (!file.delete()) file.deleteOnExit();
+        }
+    }
+
+    @Override public void addSlice(String label, ImageProcessor proc)
+    {
+        if (M_added == M_size) {
+            throw new IllegalStateException("The result stack is full.");
+        }
+        ++M_added;
+        setPixels(proc.getPixels(), M_added);
+        M_labels[M_added - 1] = label;
+    }
+    @Override public void addSlice(String label, Object pixels)
+    {
+        addSlice(label, createProcessor(pixels));
+    }
+    @Override public void deleteSlice(int n)
+    {
+        IJ.error("Slices can't be removed from a result stack.");
+    }
+    @Override public Object getPixels(int n)
+    {
+        ByteBuffer buf = slice(n);
+        int size = getWidth() * getHeight();
+        if (M_bitDepth == 8) {
+            byte[] result = new byte[size];
+            buf.get(result);
+            return result;
+        }
+        else if (M_bitDepth == 16) {
+            short[] result = new short[size];
+            buf.asShortBuffer().get(result);
+            return result;
+        }
+        else {
+            float[] result = new float[size];
+            buf.asFloatBuffer().get(result);
+            return result;
+        }
+    }
+    @Override public void setPixels(Object pixels, int n)
+    {
+        ByteBuffer buf = slice(n);
+        if (M_bitDepth == 8) buf.put((byte[])pixels);
+        else if (M_bitDepth == 16) buf.asShortBuffer().put((short[])pixels);
+        else buf.asFloatBuffer().put((float[])pixels);
+    }
+    @Override public ImageProcessor getProcessor(int n)
+    {
+        return createProcessor(getPixels(n));
+    }
+    @Override public int getSize() {return M_added;}
+    @Override public String getSliceLabel(int n)
+    {
+        checkSlice(n);
+        return M_labels[n - 1];
+    }
+    @Override public void setSliceLabel(String label, int n)
+    {
+        checkSlice(n);
+        M_labels[n - 1] = label;
+    }
+    @Override public int getBitDepth() {return M_bitDepth;}
+    @Override public Object[] getImageArray() {return null;}
+    @Override public String getDirectory() {return null;}
+    @Override public String getFileName(int n) {return null;}
+
+    // A view of slice n (starting from one) that can be read from or written
+    // to without disturbing anyone else using the same chunk.
+    private ByteBuffer slice(int n)
+    {
+        checkSlice(n);
+        ByteBuffer result = M_chunks[(n - 1) / M_slicesPerChunk].duplicate();
+        int offset = ((n - 1) % M_slicesPerChunk) * M_sliceBytes;
+        result.position(offset);
+        result.limit(offset + M_sliceBytes);
+        return result.slice().order(ByteOrder.nativeOrder());
+    }
+    private void checkSlice(int n)
+    {
+        if (n < 1 || n > M_added) {
+            throw new IllegalArgumentException("Argument out of range: " + n);
+        }
+    }
+    private ImageProcessor createProcessor(Object pixels)
+    {
+        if (M_bitDepth == 8) {
+            return new ByteProcessor(getWidth(), getHeight(), (byte[])pixels);
+        }
+        else if (M_bitDepth == 16) {
+            return new ShortProcessor(getWidth(), getHeight(), (short[])pixels,
+                                      null);
+        }
+        else {
+            return new FloatProcessor(getWidth(), getHeight(),
+                                      (float[])pixels);
+        }
+    }
+
+    private final int M_bitDepth;
+    private final int M_size;
+    private final String[] M_labels;
+    private final int M_sliceBytes;
+    private final int M_slicesPerChunk;
+    private final MappedByteBuffer[] M_chunks;
+    private int M_added = 0;
+}
@@ -0,0 +1,172 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** Reads the raw complex files that {@link Result} writes.
+ * <p>
+ * The file is all little-endian.  It starts with the eight bytes
+ * <code>DHMCPLX</code> followed by a version byte of 1, then six 32-bit
+ * integers: the bytes per value (4 for floats, 8 for doubles), the width, the
+ * height, the number of time slices, the number of z slices, and the offset of
+ * the first plane.  Then come the time values as 32-bit integers and the z
+ * values in micrometers as doubles.
+ * <p>
+ * Each plane is a row-major array of interleaved real and imaginary values,
+ * and the plane for t index <code>t</code> and z index <code>z</code> starts at
+ * <code>offset + (t * numberOfZs + z) * planeSize</code>.
+ * <p>
+ * Planes are memory mapped, so nothing is read until it is used.
+ */
+public class RawComplexReader implements AutoCloseable {
+    /** Open a raw complex file.
+     *
+     * @param path The file to open
+     * @throws IOException If the file can't be read or isn't a raw complex
+     *                     file
+     */
+    public RawComplexReader(Path path) throws IOException
+    {
+        M_channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer fixed = read(0, RawComplexWriter.SC_fixedHeaderSize);
+            byte[] magic = new byte[RawComplexWriter.SC_magic.length];
+            fixed.get(magic);
+            if (!Arrays.equals(magic, RawComplexWriter.SC_magic)) {
+                throw new IOException(path + " is not a raw complex file.");
+            }
+            M_bytes = fixed.getInt();
+            M_width = fixed.getInt();
+            M_height = fixed.getInt();
+            int tSize = fixed.getInt();
+            int zSize = fixed.getInt();
+            M_dataOffset = fixed.getInt();
+            ByteBuffer values = read(RawComplexWriter.SC_fixedHeaderSize,
+                                     tSize * 4 + zSize * 8);
+            M_ts = new int[tSize];
+            for (int i = 0; i < tSize; ++i) M_ts[i] = values.getInt();
+            M_zs = new double[zSize];
+            for (int i = 0; i < zSize; ++i) M_zs[i] = values.getDouble();
+            M_planeSize = (long)M_width * M_height * 2 * M_bytes;
+            if (M_channel.size()
+                    < M_dataOffset + M_planeSize * tSize * zSize) {
+                throw new IOException(path + " is truncated.");
+            }
+        }
+        catch (IOException e) {
+            M_channel.close();
+            throw e;
+        }
+    }
+    /** Get the width of each plane. */
+    public int width() {return M_width;}
+    /** Get the height of each plane. */
+    public int height() {return M_height;}
+    /** Get whether the values are doubles instead of floats. */
+    public boolean isDouble() {return M_bytes == 8;}
+    /** Get the time values, in the order of the t index. */
+    public int[] ts() {return M_ts.clone();}
+    /** Get the z values in micrometers, in the order of the z index. */
+    public double[] zs() {return M_zs.clone();}
+    /** Map one plane.
+     * <p>
+     * The buffer is read-only, little-endian, and holds the plane as
+     * described in the class documentation.  Use <code>asFloatBuffer()</code>
+     * or <code>asDoubleBuffer()</code> depending on {@link isDouble}.
+     *
+     * @param tIndex The index of the time slice
+     * @param zIndex The index of the z slice
+     * @return The mapped plane
+     * @throws IOException If the plane couldn't be mapped
+     */
+    public MappedByteBuffer plane(int tIndex, int zIndex) throws IOException
+    {
+        if (tIndex < 0 || tIndex >= M_ts.length
+                || zIndex < 0 || zIndex >= M_zs.length) {
+            throw new IndexOutOfBoundsException("No plane at t index "
+                + tIndex + ", z index " + zIndex + ".");
+        }
+        long index = (long)tIndex * M_zs.length + zIndex;
+        MappedByteBuffer result = M_channel.map(FileChannel.MapMode.READ_ONLY,
+            M_dataOffset + index * M_planeSize, M_planeSize);
+        result.order(RawComplexWriter.SC_order);
+        return result;
+    }
+    /** Read one plane into the same layout as
+     * {@link edu.pdx.imagej.reconstruction.ComplexField#getField}.
+     *
+     * @param tIndex The index of the time slice
+     * @param zIndex The index of the z slice
+     * @return The plane as a <code>double[width][height * 2]</code>
+     * @throws IOException If the plane couldn't be mapped
+     */
+    public double[][] field(int tIndex, int zIndex) throws IOException
+    {
+        ByteBuffer plane = plane(tIndex, zIndex);
+        double[][] result = new double[M_width][M_height * 2];
+        for (int y = 0; y < M_height; ++y) {
+            for (int x = 0; x < M_width; ++x) {
+                if (M_bytes == 8) {
+                    result[x][2 * y] = plane.getDouble();
+                    result[x][2 * y + 1] = plane.getDouble();
+                }
+                else {
+                    result[x][2 * y] = plane.getFloat();
+                    result[x][2 * y + 1] = plane.getFloat();
+                }
+            }
+        }
+        return result;
+    }
+    @Override
+    public void close() throws IOException
+    {
+        M_channel.close();
+    }
+
+    private ByteBuffer read(long position, int size) throws IOException
+    {
+        ByteBuffer result = ByteBuffer.allocate(size)
+                                      .order(RawComplexWriter.SC_order);
+        while (result.hasRemaining()) {
+            if (M_channel.read(result, position + result.position()) < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+        }
+        result.flip();
+        return result;
+    }
+
+    private final FileChannel M_channel;
+    private final int M_bytes;
+    private final int M_width;
+    private final int M_height;
+    private final int M_dataOffset;
+    private final long M_planeSize;
+    private final int[] M_ts;
+    private final double[] M_zs;
+}
@@ -0,0 +1,176 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Writes complex fields straight to a file, with no image encoding at all.  The
+// format is described in RawComplexReader.
+//
+// Writing is split in two so that it can be done in the background: encode
+// copies the field into a direct buffer right away (the field is going to be
+// changed as soon as it's given back), and write puts that buffer at the right
+// place in the file, whenever and in whatever order it gets to it.  Only a few
+// buffers are ever made, and they are reused, so encode waits if all of them
+// are still waiting to be written.
+class RawComplexWriter {
+    // Create the file at its full size and write the header.  There is one
+    // plane for each t and z, and z is in micrometers.
+    RawComplexWriter(Path path, int width, int height, boolean doubles,
+                     int[] ts, double[] zs, int buffers) throws IOException
+    {
+        M_width = width;
+        M_height = height;
+        M_doubles = doubles;
+        M_planeSize = (long)width * height * 2 * (doubles ? 8 : 4);
+        if (M_planeSize > Integer.MAX_VALUE) {
+            throw new IOException("Fields of " + width + "x" + height
+                + " are too large to write at once.");
+        }
+        int headerSize = SC_fixedHeaderSize + ts.length * 4 + zs.length * 8;
+        M_dataOffset = (headerSize + SC_align - 1) / SC_align * SC_align;
+        M_buffers = new ArrayBlockingQueue<>(buffers);
+        M_buffersLeft = buffers;
+
+        ByteBuffer header = ByteBuffer.allocate(M_dataOffset)
+                                      .order(SC_order);
+        header.put(SC_magic);
+        header.putInt(doubles ? 8 : 4);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(ts.length);
+        header.putInt(zs.length);
+        header.putInt(M_dataOffset);
+        for (int t : ts) header.putInt(t);
+        for (double z : zs) header.putDouble(z);
+        header.rewind();
+
+        M_channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.READ,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeFully(header, 0);
+            // Preallocate by writing the very last byte
+            long size = M_dataOffset + M_planeSize * ts.length * zs.length;
+            if (size > M_dataOffset) {
+                writeFully(ByteBuffer.allocate(1), size - 1);
+            }
+        }
+        catch (IOException e) {
+            M_channel.close();
+            throw e;
+        }
+    }
+    // Copy a field laid out like ComplexField.getField() into a buffer for
+    // write.  This waits if every buffer is still waiting to be written.
+    ByteBuffer encode(double[][] field) throws InterruptedException
+    {
+        ByteBuffer result = takeBuffer();
+        result.clear();
+        final int block = 64;
+        if (M_doubles) {
+            DoubleBuffer out = result.asDoubleBuffer();
+            for (int x0 = 0; x0 < M_width; x0 += block) {
+                final int x1 = Math.min(x0 + block, M_width);
+                for (int y = 0; y < M_height; ++y) {
+                    final int row = 2 * y * M_width;
+                    for (int x = x0; x < x1; ++x) {
+                        out.put(row + 2 * x, field[x][2 * y]);
+                        out.put(row + 2 * x + 1, field[x][2 * y + 1]);
+                    }
+                }
+            }
+        }
+        else {
+            FloatBuffer out = result.asFloatBuffer();
+            for (int x0 = 0; x0 < M_width; x0 += block) {
+                final int x1 = Math.min(x0 + block, M_width);
+                for (int y = 0; y < M_height; ++y) {
+                    final int row = 2 * y * M_width;
+                    for (int x = x0; x < x1; ++x) {
+                        out.put(row + 2 * x, (float)field[x][2 * y]);
+                        out.put(row + 2 * x + 1, (float)field[x][2 * y + 1]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    // Write a buffer from encode as plane number index (t index times the
+    // number of zs plus z index).  The buffer is reused afterwards.  This can
+    // be called from any thread.
+    void write(int index, ByteBuffer buf) throws IOException
+    {
+        try {
+            writeFully(buf, M_dataOffset + M_planeSize * index);
+        }
+        finally {
+            M_buffers.add(buf);
+        }
+    }
+    void close() throws IOException
+    {
+        M_channel.close();
+    }
+
+    private ByteBuffer takeBuffer() throws InterruptedException
+    {
+        ByteBuffer result = M_buffers.poll();
+        if (result != null) return result;
+        synchronized (this) {
+            if (M_buffersLeft > 0) {
+                --M_buffersLeft;
+                return ByteBuffer.allocateDirect((int)M_planeSize)
+                                 .order(SC_order);
+            }
+        }
+        return M_buffers.take();
+    }
+    private void writeFully(ByteBuffer buf, long position) throws IOException
+    {
+        while (buf.hasRemaining()) {
+            position += M_channel.write(buf, position);
+        }
+    }
+
+    static final byte[] SC_magic = {'D', 'H', 'M', 'C', 'P', 'L', 'X', 1};
+    static final ByteOrder SC_order = ByteOrder.LITTLE_ENDIAN;
+    // Magic, then the bytes per value, width, height, number of ts, number of
+    // zs, and the offset of the first plane
+    static final int SC_fixedHeaderSize = 8 + 6 * 4;
+    private static final int SC_align = 64;
+
+    private final int M_width;
+    private final int M_height;
+    private final boolean M_doubles;
+    private final long M_planeSize;
+    private final int M_dataOffset;
+    private final FileChannel M_channel;
+    private final ArrayBlockingQueue<ByteBuffer> M_buffers;
+    private int M_buffersLeft;
+}
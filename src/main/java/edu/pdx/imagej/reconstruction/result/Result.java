@@ -19,19 +19,21 @@
 
 package edu.pdx.imagej.reconstruction.result;
 
+import java.awt.Rectangle;
 import java.io.File;
-import java.nio.file.Path;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.List;
 
-import org.apache.commons.io.FileUtils;
-
-import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
 import ij.measure.Calibration;
+import ij.process.ByteProcessor;
 import ij.process.ImageProcessor;
 import ij.process.FloatProcessor;
+import ij.process.ShortProcessor;
 
 import org.scijava.Priority;
 import org.scijava.plugin.Parameter;
@@ -41,8 +43,10 @@ import org.scijava.ui.UIService;
 import edu.pdx.imagej.dynamic_parameters.DParameter;
 import edu.pdx.imagej.reconstruction.plugin.ReconstructionPlugin;
 import edu.pdx.imagej.reconstruction.plugin.AbstractReconstructionPlugin;
+import edu.pdx.imagej.reconstruction.plugin.LazyReconstructionPlugin;
 import edu.pdx.imagej.reconstruction.plugin.MainReconstructionPlugin;
 import edu.pdx.imagej.reconstruction.ConstReconstructionField;
+import edu.pdx.imagej.reconstruction.LazyReconstruction;
 import edu.pdx.imagej.reconstruction.ReconstructionField;
 import edu.pdx.imagej.reconstruction.units.DistanceUnitValue;
 
@@ -56,7 +60,8 @@ import edu.pdx.imagej.reconstruction.units.DistanceUnitValue;
 @Plugin(type = ReconstructionPlugin.class, name = "Result",
         priority = Priority.LAST)
 public class Result extends AbstractReconstructionPlugin
-                    implements MainReconstructionPlugin {
+                    implements MainReconstructionPlugin,
+                               LazyReconstructionPlugin {
     @Parameter UIService P_ui;
     /** Constructor intended for live use of the plugin.
      */
@@ -96,6 +101,17 @@ public class Result extends AbstractReconstructionPlugin
                     new File(Paths.get(M_options.saveDirectory,
                         "Imaginary").toString()).mkdirs();
                 }
+                if (M_options.rawComplex != ResultOptions.RawComplex.None) {
+                    new File(M_options.saveDirectory).mkdirs();
+                }
+                if (M_options.projection) {
+                    new File(Paths.get(M_options.saveDirectory,
+                        SC_maxName).toString()).mkdirs();
+                    new File(Paths.get(M_options.saveDirectory,
+                        SC_depthName).toString()).mkdirs();
+                    new File(Paths.get(M_options.saveDirectory,
+                        SC_sumName).toString()).mkdirs();
+                }
             }
             catch (SecurityException e) {
                 P_ui.showDialog("Unable to create directories: "
@@ -112,8 +128,21 @@ public class Result extends AbstractReconstructionPlugin
     public void processHologramParam(ImagePlus hologram)
     {
         M_hologram = hologram;
-        M_pixelWidth = hologram.getProcessor().getWidth();
-        M_pixelHeight = hologram.getProcessor().getHeight();
+        M_crop = new Rectangle(hologram.getProcessor().getWidth(),
+                               hologram.getProcessor().getHeight());
+        Rectangle crop = M_options.crop;
+        if (crop == null && M_options.cropToSelection
+                && hologram.getRoi() != null) {
+            crop = hologram.getRoi().getBounds();
+        }
+        if (crop != null) M_crop = M_crop.intersection(crop);
+        M_pixelWidth = M_crop.width / M_options.binning;
+        M_pixelHeight = M_crop.height / M_options.binning;
+        if (M_pixelWidth < 1 || M_pixelHeight < 1) {
+            P_ui.showDialog("The result would be empty after cropping and "
+                + "binning.", "Error");
+            M_error = true;
+        }
     }
     /** Get the size of the image to create a <code>Calibration</code> object.
      */
@@ -122,9 +151,15 @@ public class Result extends AbstractReconstructionPlugin
                                          DistanceUnitValue height)
     {
         M_cal = new Calibration();
-        M_cal.pixelWidth = width.value() / M_pixelWidth;
-        M_cal.pixelHeight = height.value() / M_pixelHeight;
+        M_cal.pixelWidth = width.value() / M_hologram.getProcessor().getWidth()
+                           * M_options.binning;
+        M_cal.pixelHeight = height.value()
+                            / M_hologram.getProcessor().getHeight()
+                            * M_options.binning;
         M_cal.setUnit(width.unit().toString());
+        // Keep the hologram's origin where it was
+        M_cal.xOrigin = (double)-M_crop.x / M_options.binning;
+        M_cal.yOrigin = (double)-M_crop.y / M_options.binning;
     }
     /** Determine how many time slices there are, and create directories if
      * needed.
@@ -156,26 +191,6 @@ public class Result extends AbstractReconstructionPlugin
                         }
                     }
                 }
-                if (M_options.dirStructure == ResultOptions.DirStructure.T) {
-                    for (int t : ts) {
-                        if (M_options.amplitude) {
-                            new File(Paths.get(M_options.saveDirectory, "Tmp",
-                                "Amplitude", formatT(t)).toString()).mkdirs();
-                        }
-                        if (M_options.phase) {
-                            new File(Paths.get(M_options.saveDirectory, "Tmp",
-                                "Phase", formatT(t)).toString()).mkdirs();
-                        }
-                        if (M_options.real) {
-                            new File(Paths.get(M_options.saveDirectory, "Tmp",
-                                "Real", formatT(t)).toString()).mkdirs();
-                        }
-                        if (M_options.imaginary) {
-                            new File(Paths.get(M_options.saveDirectory, "Tmp",
-                                "Imaginary", formatT(t)).toString()).mkdirs();
-                        }
-                    }
-                }
             }
             catch (SecurityException e) {
                 P_ui.showDialog("Unable to create directories: "
@@ -214,26 +229,6 @@ public class Result extends AbstractReconstructionPlugin
                         }
                     }
                 }
-                if (M_options.dirStructure == ResultOptions.DirStructure.Z) {
-                    for (DistanceUnitValue z : zs) {
-                        if (M_options.amplitude) {
-                            new File(Paths.get(M_options.saveDirectory, "Tmp",
-                                "Amplitude", formatZ(z)).toString()).mkdirs();
-                        }
-                        if (M_options.phase) {
-                            new File(Paths.get(M_options.saveDirectory, "Tmp",
-                                "Phase", formatZ(z)).toString()).mkdirs();
-                        }
-                        if (M_options.real) {
-                            new File(Paths.get(M_options.saveDirectory, "Tmp",
-                                "Real", formatZ(z)).toString()).mkdirs();
-                        }
-                        if (M_options.imaginary) {
-                            new File(Paths.get(M_options.saveDirectory, "Tmp",
-                                "Imaginary", formatZ(z)).toString()).mkdirs();
-                        }
-                    }
-                }
             }
             catch (SecurityException e) {
                 P_ui.showDialog("Unable to create directories: "
@@ -244,23 +239,70 @@ public class Result extends AbstractReconstructionPlugin
         }
     }
     /** Create the result images if {@link ResultOptions#saveToFile} is
-     * <code>false</code>.
+     * <code>false</code> (in a scratch file if {@link
+     * ResultOptions#diskBacked} is <code>true</code>), or the files that
+     * slices are written into if they are saved as stacks.
      */
     @Override
     public void processBeginning()
     {
-        if (!M_options.saveToFile) {
-            if (M_options.amplitude) {
-                M_amplitude = new ImageStack(M_pixelWidth, M_pixelHeight);
+        if (isLazy() && M_options.projection) {
+            P_ui.showDialog("Z projections can't be made when the result is "
+                + "only reconstructed as it is looked at.", "Error");
+            M_error = true;
+            return;
+        }
+        if (M_options.scaling == ResultOptions.Scaling.Fixed) {
+            M_rangeMin = new double[]{
+                M_options.amplitudeMin, M_options.phaseMin,
+                M_options.realMin, M_options.imaginaryMin};
+            M_rangeMax = new double[]{
+                M_options.amplitudeMax, M_options.phaseMax,
+                M_options.realMax, M_options.imaginaryMax};
+        }
+        // First finds its range again from this reconstruction's first slice
+        else {
+            M_rangeMin = null;
+            M_rangeMax = null;
+        }
+        if (M_options.projection && !M_options.saveToFile) {
+            M_maxStack = new ImageStack(M_pixelWidth, M_pixelHeight);
+            M_depthStack = new ImageStack(M_pixelWidth, M_pixelHeight);
+            M_sumStack = new ImageStack(M_pixelWidth, M_pixelHeight);
+        }
+        if (M_options.saveToFile) {
+            M_pool = new WriterPool(SC_writerThreads, SC_writerCapacity);
+            M_writers.clear();
+            M_raw = null;
+            try {
+                if (M_options.amplitude) createWriters("Amplitude");
+                if (M_options.phase) createWriters("Phase");
+                if (M_options.real) createWriters("Real");
+                if (M_options.imaginary) createWriters("Imaginary");
+                if (M_options.rawComplex != ResultOptions.RawComplex.None) {
+                    createRawWriter();
+                }
             }
-            if (M_options.phase) {
-                M_phase = new ImageStack(M_pixelWidth, M_pixelHeight);
+            catch (IOException e) {
+                closeFiles();
+                P_ui.showDialog("Unable to create files: " + e.getMessage(),
+                                "Error");
+                M_error = true;
+                return;
             }
-            if (M_options.real) {
-                M_real = new ImageStack(M_pixelWidth, M_pixelHeight);
+        }
+        else if (!M_options.lazy) {
+            try {
+                if (M_options.amplitude) M_amplitude = createStack();
+                if (M_options.phase) M_phase = createStack();
+                if (M_options.real) M_real = createStack();
+                if (M_options.imaginary) M_imaginary = createStack();
             }
-            if (M_options.imaginary) {
-                M_imaginary = new ImageStack(M_pixelWidth, M_pixelHeight);
+            catch (IOException e) {
+                P_ui.showDialog("Unable to create scratch file: "
+                    + e.getMessage(), "Error");
+                M_error = true;
+                return;
             }
         }
     }
@@ -270,62 +312,248 @@ public class Result extends AbstractReconstructionPlugin
     public void processPropagatedField(ReconstructionField field,
                                          int t, DistanceUnitValue z)
     {
+        if (M_lazy != null) return;
+        double[][] output = output(field);
+        if (M_options.projection) project(output, t, z);
+        if (M_raw != null) processRaw(output, t, z);
+        ImageProcessor[] procs = extract(output);
+        String label = getSliceLabel(t);
         if (M_options.amplitude) {
-            processParticular(field.field().getAmp(), t, z,
-                               M_amplitude, "Amplitude", getSliceLabel(t));
+            processParticular(procs[0], t, z, M_amplitude, "Amplitude", label);
         }
         if (M_options.phase) {
-            processParticular(field.field().getArg(), t, z,
-                               M_phase, "Phase", getSliceLabel(t));
+            processParticular(procs[1], t, z, M_phase, "Phase", label);
         }
         if (M_options.real) {
-            processParticular(field.field().getReal(), t, z,
-                               M_real, "Real", getSliceLabel(t));
+            processParticular(procs[2], t, z, M_real, "Real", label);
         }
         if (M_options.imaginary) {
-            processParticular(field.field().getImag(), t, z,
-                               M_imaginary, "Imaginary", getSliceLabel(t));
+            processParticular(procs[3], t, z, M_imaginary, "Imaginary", label);
         }
     }
-    private void processParticular(double[][] dResult, int t,
-                                    DistanceUnitValue z, ImageStack stack,
-                                    String type, String label)
+    /** Whether the result should be reconstructed lazily.  This is only the
+     * case when {@link ResultOptions#lazy} is <code>true</code> and the result
+     * is not saved to file.
+     */
+    @Override
+    public boolean isLazy()
+    {
+        return M_options.lazy && !M_options.saveToFile;
+    }
+    /** Get what is used to reconstruct the slices when they are looked at.
+     */
+    @Override
+    public void processLazy(LazyReconstruction reconstruction)
+    {
+        int outputs = 0;
+        if (M_options.amplitude) ++outputs;
+        if (M_options.phase) ++outputs;
+        if (M_options.real) ++outputs;
+        if (M_options.imaginary) ++outputs;
+        long planeSize = (long)M_pixelWidth * M_pixelHeight * (bitDepth() / 8)
+                       * Math.max(outputs, 1);
+        int cacheSize = (int)Math.max(2, SC_lazyCacheBytes / planeSize);
+        M_lazy = new LazyStack.Planes(n -> {
+            int t = M_ts.get((n - 1) / M_zSize);
+            DistanceUnitValue z = M_zs.get((n - 1) % M_zSize);
+            return extract(output(reconstruction.reconstruct(t, z)));
+        }, cacheSize);
+    }
+    // Fold this z slice into the projections, and output them once this was
+    // the last z slice.
+    private void project(double[][] field, int t, DistanceUnitValue z)
+    {
+        final int width = field.length;
+        final int height = field[0].length / 2;
+        boolean first = M_projected == 0;
+        if (first) {
+            final int size = width * height;
+            M_max = new float[size];
+            M_depth = new float[size];
+            M_sum = new float[size];
+        }
+        ExtractUtil.project(field, (float)z.value(), M_max, M_depth, M_sum,
+                            first);
+        if (++M_projected < M_zSize) return;
+        M_projected = 0;
+        String label = getSliceLabel(t);
+        processProjection(new FloatProcessor(width, height, M_max), t,
+                          M_maxStack, SC_maxName, label);
+        processProjection(new FloatProcessor(width, height, M_depth), t,
+                          M_depthStack, SC_depthName, label);
+        processProjection(new FloatProcessor(width, height, M_sum), t,
+                          M_sumStack, SC_sumName, label);
+    }
+    private void processProjection(ImageProcessor proc, int t,
+                                   ImageStack stack, String type, String label)
     {
-        float[][] result = new float[dResult.length][dResult[0].length];
-        for (int x = 0; x < result.length; ++x) {
-            for (int y = 0; y < result[0].length; ++y) {
-                result[x][y] = (float)dResult[x][y];
+        if (M_options.saveToFile) {
+            String path = Paths.get(M_options.saveDirectory, type, formatT(t))
+                               .toString();
+            try {
+                M_pool.submit(() -> saveSlice(proc, path));
+            }
+            catch (IOException e) {
+                throw new RuntimeException("Unable to save " + type + ": "
+                    + e.getMessage(), e);
+            }
+        }
+        else stack.addSlice(label, proc);
+    }
+    // The field is copied now, because it is changed as soon as this returns,
+    // but it is written in the background like everything else.
+    private void processRaw(double[][] field, int t, DistanceUnitValue z)
+    {
+        final int index = M_ts.indexOf(t) * M_zSize + M_zs.indexOf(z);
+        try {
+            ByteBuffer buf = M_raw.encode(field);
+            M_pool.submit(() -> M_raw.write(index, buf));
+        }
+        catch (IOException | InterruptedException e) {
+            throw new RuntimeException("Unable to save raw complex field: "
+                + e.getMessage(), e);
+        }
+    }
+    // The part of the field that is output, after cropping and binning
+    private double[][] output(ReconstructionField field)
+    {
+        double[][] result = field.field().viewField();
+        if (M_crop.x == 0 && M_crop.y == 0 && M_options.binning == 1
+                && M_crop.width == result.length
+                && M_crop.height * 2 == result[0].length) {
+            return result;
+        }
+        return ExtractUtil.reduce(result, M_crop.x, M_crop.y, M_pixelWidth,
+                                  M_pixelHeight, M_options.binning);
+    }
+    // Every output of the field, in the order amplitude, phase, real,
+    // imaginary.  The ones that aren't wanted are null.
+    private ImageProcessor[] extract(double[][] field)
+    {
+        final int width = field.length;
+        final int height = field[0].length / 2;
+        final int size = width * height;
+        final boolean[] wanted = {M_options.amplitude, M_options.phase,
+                                  M_options.real, M_options.imaginary};
+        ImageProcessor[] result = new ImageProcessor[4];
+        // With a known range, 8-bit and 16-bit are made directly
+        if (M_rangeMin != null
+                && (M_options.type == ResultOptions.Type.Type8Bit
+                    || M_options.type == ResultOptions.Type.Type16Bit)) {
+            final boolean bytes
+                = M_options.type == ResultOptions.Type.Type8Bit;
+            Object[] pixels = new Object[4];
+            for (int k = 0; k < 4; ++k) {
+                if (wanted[k]) {
+                    pixels[k] = bytes ? new byte[size] : new short[size];
+                }
+            }
+            ExtractUtil.quantize(field, pixels, M_rangeMin, M_rangeMax,
+                                 M_options.approximatePhase);
+            for (int k = 0; k < 4; ++k) {
+                if (pixels[k] == null) continue;
+                if (bytes) {
+                    result[k] = new ByteProcessor(width, height,
+                                                  (byte[])pixels[k]);
+                }
+                else {
+                    result[k] = new ShortProcessor(width, height,
+                                                   (short[])pixels[k], null);
+                }
+            }
+            return result;
+        }
+        float[][] pixels = new float[4][];
+        for (int k = 0; k < 4; ++k) {
+            if (wanted[k]) pixels[k] = new float[size];
+        }
+        ExtractUtil.extract(field, pixels[0], pixels[1], pixels[2],
+                            pixels[3], M_options.approximatePhase);
+        for (int k = 0; k < 4; ++k) {
+            if (pixels[k] != null) {
+                result[k] = new FloatProcessor(width, height, pixels[k]);
+            }
+        }
+        if (M_options.scaling == ResultOptions.Scaling.First) {
+            // Lazy slices are made on whichever thread looks at them, but
+            // always while holding the lock of their Planes, so the range is
+            // set holding it too
+            synchronized (M_lazy == null ? this : M_lazy) {
+                if (M_rangeMin == null) {
+                    // This is the first slice, so its range is used from now
+                    // on
+                    double[] min = {0, -Math.PI, 0, 0};
+                    double[] max = {0, Math.PI, 0, 0};
+                    for (int k : new int[]{0, 2, 3}) {
+                        if (result[k] == null) continue;
+                        min[k] = result[k].getMin();
+                        max[k] = result[k].getMax();
+                    }
+                    M_rangeMin = min;
+                    M_rangeMax = max;
+                }
             }
         }
-        ImageProcessor proc = new FloatProcessor(result);
-        if (type == "Phase") proc.setMinAndMax(-Math.PI, Math.PI);
+        for (int k = 0; k < 4; ++k) {
+            if (result[k] != null) result[k] = convert(result[k], k);
+        }
+        return result;
+    }
+    // output is the index of the output, in the same order as extract
+    private ImageProcessor convert(ImageProcessor proc, int output)
+    {
+        if (M_rangeMin != null) {
+            proc.setMinAndMax(M_rangeMin[output], M_rangeMax[output]);
+        }
+        else if (output == 1) proc.setMinAndMax(-Math.PI, Math.PI);
         if (M_options.type == ResultOptions.Type.Type8Bit) {
             proc = proc.convertToByteProcessor();
         }
         else if (M_options.type == ResultOptions.Type.Type16Bit) {
             proc = proc.convertToShortProcessor();
         }
-
+        return proc;
+    }
+    private void processParticular(ImageProcessor proc, int t,
+                                    DistanceUnitValue z, ImageStack stack,
+                                    String type, String label)
+    {
         if (M_options.saveToFile) {
-            ImagePlus tempImg = new ImagePlus("", proc);
-            tempImg.setCalibration(M_cal);
-            if (M_options.dirStructure == ResultOptions.DirStructure.ZT) {
-                IJ.saveAsTiff(tempImg, Paths.get(M_options.saveDirectory, type,
-                    formatZ(z), formatT(t)).toString());
-            }
-            if (M_options.dirStructure == ResultOptions.DirStructure.TZ) {
-                IJ.saveAsTiff(tempImg, Paths.get(M_options.saveDirectory, type,
-                    formatT(t), formatZ(z)).toString());
-            }
-            if (M_options.dirStructure == ResultOptions.DirStructure.Z) {
-                IJ.saveAsTiff(tempImg, Paths.get(M_options.saveDirectory, "Tmp",
-                    type, formatZ(z), formatT(t)).toString());
+            ImageProcessor finalProc = proc;
+            try {
+                if (M_options.dirStructure == ResultOptions.DirStructure.ZT) {
+                    String path = Paths.get(M_options.saveDirectory, type,
+                        formatZ(z), formatT(t)).toString();
+                    M_pool.submit(() -> saveSlice(finalProc, path));
+                }
+                if (M_options.dirStructure == ResultOptions.DirStructure.TZ) {
+                    String path = Paths.get(M_options.saveDirectory, type,
+                        formatT(t), formatZ(z)).toString();
+                    M_pool.submit(() -> saveSlice(finalProc, path));
+                }
+                // Z and T are written straight into their stacks
+                if (M_options.dirStructure == ResultOptions.DirStructure.Z) {
+                    TiffStackWriter writer
+                        = M_writers.get(type)[M_zs.indexOf(z)];
+                    int index = M_ts.indexOf(t);
+                    M_pool.submit(() -> writer.writeSlice(index, finalProc));
+                }
+                if (M_options.dirStructure == ResultOptions.DirStructure.T) {
+                    TiffStackWriter writer
+                        = M_writers.get(type)[M_ts.indexOf(t)];
+                    int index = M_zs.indexOf(z);
+                    M_pool.submit(() -> writer.writeSlice(index, finalProc));
+                }
+                if (M_options.dirStructure
+                        == ResultOptions.DirStructure.Chunked) {
+                    M_chunked.get(type).addSlice(M_ts.indexOf(t),
+                                                 M_zs.indexOf(z), finalProc);
+                }
             }
-            if (M_options.dirStructure == ResultOptions.DirStructure.T) {
-                IJ.saveAsTiff(tempImg, Paths.get(M_options.saveDirectory, "Tmp",
-                    type, formatT(t), formatZ(z)).toString());
+            catch (IOException e) {
+                throw new RuntimeException("Unable to save " + type + ": "
+                    + e.getMessage(), e);
             }
-            tempImg.close();
         }
         // Not save to file
         else {
@@ -347,94 +575,150 @@ public class Result extends AbstractReconstructionPlugin
             if (M_options.imaginary) {
                 M_options.imaginaryFunc.accept(M_imaginaryImp);
             }
+            if (M_maxImp != null) {
+                M_options.projectionFunc.accept(M_maxImp);
+                M_options.projectionFunc.accept(M_depthImp);
+                M_options.projectionFunc.accept(M_sumImp);
+            }
+            if (M_lazy != null && M_options.imgFunc != null) {
+                if (M_options.amplitude) processImg("Amplitude", 0);
+                if (M_options.phase) processImg("Phase", 1);
+                if (M_options.real) processImg("Real", 2);
+                if (M_options.imaginary) processImg("Imaginary", 3);
+            }
+        }
+    }
+    private void processImg(String type, int output)
+    {
+        M_options.imgFunc.accept(type, LazyCells.create(M_pixelWidth,
+            M_pixelHeight, M_zSize, M_tSize, bitDepth(), M_lazy, output));
+    }
+    // Called from the writer pool
+    private void saveSlice(ImageProcessor proc, String path)
+        throws IOException
+    {
+        // Not IJ.saveAsTiff, which only reports failures in a dialog
+        TiffStackWriter writer = new TiffStackWriter(
+            Paths.get(path + ".tif"), proc.getWidth(), proc.getHeight(),
+            proc.getBitDepth(), null, M_cal, M_options.compress);
+        try {
+            writer.writeSlice(0, proc);
+        }
+        finally {
+            writer.close();
         }
     }
-    private void processTmpSave(String type)
+    // Each stack or chunked volume is written into as its slices come in, so
+    // everything but the pixels is written now.
+    private void createWriters(String type) throws IOException
     {
         if (M_options.dirStructure == ResultOptions.DirStructure.T) {
-            for (int t : M_ts) {
-                ImageStack new_stack
-                    = new ImageStack(M_pixelWidth, M_pixelHeight);
-                for (DistanceUnitValue z : M_zs) {
-                    ImagePlus slice = openImage(Paths.get(
-                        M_options.saveDirectory,
-                        "Tmp",
-                        type,
-                        formatT(t),
-                        formatZ(z)
-                    ));
-                    new_stack.addSlice(
-                        "z = " + formatZ(z),
-                        slice.getProcessor()
-                    );
-                }
-                IJ.saveAsTiff(
-                    new ImagePlus("t = " + formatT(t), new_stack),
-                    Paths.get(
-                        M_options.saveDirectory,
-                        type,
-                        formatT(t)
-                    ).toString()
-                );
+            String[] labels = new String[M_zSize];
+            for (int i = 0; i < M_zSize; ++i) {
+                labels[i] = "z = " + formatZ(M_zs.get(i));
             }
-            try {
-                FileUtils.deleteDirectory(
-                    new File(
-                        Paths.get(M_options.saveDirectory, "Tmp").toString()
-                    )
-                );
-            }
-            catch (java.io.IOException e) {
-
+            // Put in M_writers first so that whatever was opened is closed
+            // even if a later one fails
+            TiffStackWriter[] writers = new TiffStackWriter[M_tSize];
+            M_writers.put(type, writers);
+            for (int i = 0; i < M_tSize; ++i) {
+                writers[i] = new TiffStackWriter(Paths.get(
+                    M_options.saveDirectory, type, formatT(M_ts.get(i))
+                    + ".tif"), M_pixelWidth, M_pixelHeight, bitDepth(),
+                    labels, M_cal, M_options.compress);
             }
         }
         if (M_options.dirStructure == ResultOptions.DirStructure.Z) {
-            for (DistanceUnitValue z : M_zs) {
-                ImageStack new_stack
-                    = new ImageStack(M_pixelWidth, M_pixelHeight);
-                for (int t : M_ts) {
-                    ImagePlus slice = openImage(Paths.get(
-                        M_options.saveDirectory,
-                        "Tmp",
-                        type,
-                        formatZ(z),
-                        formatT(t)
-                    ));
-                    new_stack.addSlice(
-                        "t = " + formatT(t),
-                        slice.getProcessor()
-                    );
+            String[] labels = new String[M_tSize];
+            for (int i = 0; i < M_tSize; ++i) {
+                labels[i] = "t = " + formatT(M_ts.get(i));
+            }
+            TiffStackWriter[] writers = new TiffStackWriter[M_zSize];
+            M_writers.put(type, writers);
+            for (int i = 0; i < M_zSize; ++i) {
+                writers[i] = new TiffStackWriter(Paths.get(
+                    M_options.saveDirectory, type, formatZ(M_zs.get(i))
+                    + ".tif"), M_pixelWidth, M_pixelHeight, bitDepth(),
+                    labels, M_cal, M_options.compress);
+            }
+        }
+        if (M_options.dirStructure == ResultOptions.DirStructure.Chunked) {
+            M_chunked.put(type, new ChunkedWriter(
+                Paths.get(M_options.saveDirectory, type), M_pixelWidth,
+                M_pixelHeight, bitDepth(), M_options.compress, tArray(),
+                zArrayMicro(), M_cal, M_pool));
+        }
+    }
+    private void createRawWriter() throws IOException
+    {
+        M_raw = new RawComplexWriter(
+            Paths.get(M_options.saveDirectory, SC_rawName), M_pixelWidth,
+            M_pixelHeight,
+            M_options.rawComplex == ResultOptions.RawComplex.Float64,
+            tArray(), zArrayMicro(), SC_writerCapacity + 1);
+    }
+    private int[] tArray()
+    {
+        int[] result = new int[M_tSize];
+        for (int i = 0; i < M_tSize; ++i) result[i] = M_ts.get(i);
+        return result;
+    }
+    private double[] zArrayMicro()
+    {
+        double[] result = new double[M_zSize];
+        for (int i = 0; i < M_zSize; ++i) result[i] = M_zs.get(i).asMicro();
+        return result;
+    }
+    // Close every stack and the raw file, even if some fail, returning the
+    // first error or null if there was none
+    private IOException closeFiles()
+    {
+        IOException error = null;
+        for (TiffStackWriter[] writers : M_writers.values()) {
+            for (TiffStackWriter writer : writers) {
+                if (writer == null) continue;
+                try {
+                    writer.close();
+                }
+                catch (IOException e) {
+                    if (error == null) error = e;
                 }
-                IJ.saveAsTiff(
-                    new ImagePlus("z = " + formatZ(z), new_stack),
-                    Paths.get(
-                        M_options.saveDirectory,
-                        type,
-                        formatZ(z)
-                    ).toString()
-                );
             }
+        }
+        if (M_raw != null) {
             try {
-                FileUtils.deleteDirectory(
-                    new File(
-                        Paths.get(M_options.saveDirectory, "Tmp").toString()
-                    )
-                );
+                M_raw.close();
             }
-            catch (java.io.IOException e) {
-
+            catch (IOException e) {
+                if (error == null) error = e;
             }
         }
+        return error;
     }
     void almostProcessEnding() // Package private for testing
     {
         if (M_options.saveToFile) {
-            if (M_options.amplitude) processTmpSave("Amplitude");
-            if (M_options.phase) processTmpSave("Phase");
-            if (M_options.real) processTmpSave("Real");
-            if (M_options.imaginary) processTmpSave("Imaginary");
+            // Every file is closed even if something failed, so that as much
+            // as possible is saved.  Only the first error is reported.
+            IOException error = null;
+            try {
+                M_pool.finish();
+            }
+            catch (IOException e) {
+                error = e;
+            }
+            finally {
+                IOException closeError = closeFiles();
+                if (error == null) error = closeError;
+            }
+            if (error != null) {
+                P_ui.showDialog("Unable to save result: "
+                                + error.getMessage(), "Error");
+                M_error = true;
+            }
         }
         else {
+            if (M_lazy != null) createLazyStacks();
             if (M_options.amplitude) {
                 M_amplitudeImp = createImp(M_amplitude, "Amplitude");
             }
@@ -443,17 +727,67 @@ public class Result extends AbstractReconstructionPlugin
             if (M_options.imaginary) {
                 M_imaginaryImp = createImp(M_imaginary, "Imaginary");
             }
+            if (M_options.projection) {
+                M_maxImp = createProjectionImp(M_maxStack, SC_maxName);
+                M_depthImp = createProjectionImp(M_depthStack, SC_depthName);
+                M_sumImp = createProjectionImp(M_sumStack, SC_sumName);
+            }
         }
     }
+    private void createLazyStacks()
+    {
+        // The range for First scaling comes from whichever slice is made
+        // first, so make the first slice now instead of whichever one is
+        // looked at first
+        if (M_options.scaling == ResultOptions.Scaling.First) M_lazy.get(1, 0);
+        String[] labels = new String[M_tSize * M_zSize];
+        int i = 0;
+        for (int t : M_ts) {
+            String label = getSliceLabel(t);
+            for (DistanceUnitValue z : M_zs) {
+                labels[i++] = label + ", z = " + formatZ(z);
+            }
+        }
+        if (M_options.amplitude) {
+            M_amplitude = new LazyStack(M_pixelWidth, M_pixelHeight,
+                                        bitDepth(), M_lazy, 0, labels.clone());
+        }
+        if (M_options.phase) {
+            M_phase = new LazyStack(M_pixelWidth, M_pixelHeight, bitDepth(),
+                                    M_lazy, 1, labels.clone());
+        }
+        if (M_options.real) {
+            M_real = new LazyStack(M_pixelWidth, M_pixelHeight, bitDepth(),
+                                   M_lazy, 2, labels.clone());
+        }
+        if (M_options.imaginary) {
+            M_imaginary = new LazyStack(M_pixelWidth, M_pixelHeight,
+                                        bitDepth(), M_lazy, 3, labels.clone());
+        }
+    }
+    private ImagePlus createProjectionImp(ImageStack stack, String label)
+    {
+        ImagePlus imp = new ImagePlus(label, stack);
+        imp.setDimensions(1, 1, M_tSize);
+        imp.setOpenAsHyperStack(true);
+        imp.setCalibration(M_cal);
+        return imp;
+    }
+    private ImageStack createStack() throws IOException
+    {
+        if (M_options.diskBacked) {
+            return new MappedStack(M_pixelWidth, M_pixelHeight, bitDepth(),
+                                   M_zSize * M_tSize);
+        }
+        return new ImageStack(M_pixelWidth, M_pixelHeight);
+    }
     private ImagePlus createImp(ImageStack stack, String label)
     {
-        int bitDepth = 8;
-        if (M_options.type == ResultOptions.Type.Type16Bit) bitDepth = 16;
-        else if (M_options.type == ResultOptions.Type.Type32Bit) bitDepth = 32;
-        ImagePlus imp = IJ.createHyperStack(label, M_pixelWidth,
-                                            M_pixelHeight, 1, M_zSize,
-                                            M_tSize, bitDepth);
-        imp.setStack(stack);
+        // Not IJ.createHyperStack, because that would allocate a whole stack
+        // only to throw it away.
+        ImagePlus imp = new ImagePlus(label, stack);
+        imp.setDimensions(1, M_zSize, M_tSize);
+        imp.setOpenAsHyperStack(true);
         imp.setCalibration(M_cal);
         return imp;
     }
@@ -467,41 +801,31 @@ public class Result extends AbstractReconstructionPlugin
     private String formatZ(DistanceUnitValue z)
         {return String.format("%.3f", z.value());}
     private String formatT(int t) {return String.format("%05d", t);}
+    private int bitDepth()
+    {
+        if (M_options.type == ResultOptions.Type.Type8Bit) return 8;
+        if (M_options.type == ResultOptions.Type.Type16Bit) return 16;
+        return 32;
+    }
     private String getSliceLabel(int t)
     {
         String result = M_hologram.getImageStack().getSliceLabel(t);
         if (result == null) result = M_hologram.getTitle();
         return result;
     }
-    private ImagePlus openImage(Path path)
-    {
-        ImagePlus result = null;
-        File file = new File(path.toString() + ".tif");
-        if (file.isFile()) {
-            result = IJ.openImage(path.toString() + ".tif");
-        }
-        else if (file.exists()) {
-            throw new RuntimeException(path.toString()
-                + ".tif is not an image file.");
-        }
-        else {
-            file = new File(path.toString() + ".tiff");
-            if (file.isFile()) {
-                result = IJ.openImage(path.toString() + ".tiff");
-            }
-            else if (file.exists()) {
-                throw new RuntimeException(path.toString()
-                    + ".tif is not an image file.");
-            }
-            else {
-                throw new RuntimeException("A temporary file that "
-                    + "shouldn't have been touched was deleted.  "
-                    + "Please try again without removing any files."
-                );
-            }
-        }
-        return result;
-    }
+
+    // Writing is mostly waiting on the disk, so a few threads is plenty, but
+    // chunks are also compressed there, so use every core if there are more.
+    // The queue only needs to be long enough to smooth out slow writes.
+    private static final int SC_writerThreads
+        = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int SC_writerCapacity = 8;
+    private static final String SC_maxName = "Max Amplitude";
+    private static final String SC_depthName = "Max Depth";
+    private static final String SC_sumName = "Sum Amplitude";
+    private static final String SC_rawName = "Complex.raw";
+    // How much memory lazily reconstructed slices can keep
+    private static final long SC_lazyCacheBytes = 256L * 1024 * 1024;
 
     private ResultParameter M_param = new ResultParameter();
     ResultOptions M_options; // Package private for testing
@@ -513,6 +837,9 @@ public class Result extends AbstractReconstructionPlugin
     ImagePlus M_phaseImp;
     ImagePlus M_realImp;
     ImagePlus M_imaginaryImp;
+    ImagePlus M_maxImp;
+    ImagePlus M_depthImp;
+    ImagePlus M_sumImp;
     private boolean M_error = false;
     private ImagePlus M_hologram;
     private Calibration M_cal;
@@ -520,6 +847,24 @@ public class Result extends AbstractReconstructionPlugin
     private int M_tSize;
     private List<DistanceUnitValue> M_zs;
     private List<Integer> M_ts;
+    // The size of the output, after cropping and binning
     private int M_pixelWidth;
     private int M_pixelHeight;
+    // The part of the hologram that is output, in the hologram's pixels
+    private Rectangle M_crop;
+    private HashMap<String, TiffStackWriter[]> M_writers = new HashMap<>();
+    private HashMap<String, ChunkedWriter> M_chunked = new HashMap<>();
+    private WriterPool M_pool;
+    private RawComplexWriter M_raw;
+    private LazyStack.Planes M_lazy;
+    private ImageStack M_maxStack;
+    private ImageStack M_depthStack;
+    private ImageStack M_sumStack;
+    private float[] M_max;
+    private float[] M_depth;
+    private float[] M_sum;
+    private int M_projected = 0;
+    // The range of each output, once it is known
+    private double[] M_rangeMin;
+    private double[] M_rangeMax;
 }
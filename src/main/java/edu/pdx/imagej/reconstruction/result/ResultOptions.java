@@ -19,10 +19,14 @@
 
 package edu.pdx.imagej.reconstruction.result;
 
+import java.awt.Rectangle;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import ij.ImagePlus;
 
+import net.imglib2.img.Img;
+
 /** The options to use for {@link Result}.  This is just a bunch of data with no
  * OOP semantics.
  */
@@ -35,14 +39,120 @@ public class ResultOptions {
     public boolean real;
     /** Whether or not to show the imaginary part of the result. */
     public boolean imaginary;
+    /** Whether or not to make z-projections of the amplitude of the result.
+     * For each time slice, the maximum amplitude over z, the z where that
+     * maximum is (a depth map), and the sum of the amplitude over z are made
+     * as each z slice is propagated, so the z slices themselves never need to
+     * be kept.  These are always 32-bit.  They can't be made when the result
+     * is {@link lazy}, and asking for both is an error.
+     */
+    public boolean projection;
     /** Enumeration specifying what type of image to output. */
     public enum Type {Type8Bit, Type16Bit, Type32Bit};
     /** The type of image to output. */
     public Type type;
+    /** Enumeration specifying how values are scaled to 8-bit or 16-bit
+     * pixels.
+     */
+    public enum Scaling {
+        /** Scale each slice from its own minimum to its own maximum (the
+         * default).  Phase is always scaled from -&pi; to &pi;.
+         */
+        Slice,
+        /** Scale every slice with the range of the first slice (the first
+         * time slice at the first z slice), so that the same value is the
+         * same pixel in every slice.  This is only the first slice's range,
+         * not the range of the whole result, because the slices are made one
+         * at a time and the range is needed for the first one.  Values in
+         * later slices outside of it are clipped to its ends.  When the
+         * result is {@link lazy}, the first slice is made right away for
+         * this.  Phase is always scaled from -&pi; to &pi;.
+         */
+        First,
+        /** Scale every slice with the ranges given here, such as {@link
+         * amplitudeMin} to {@link amplitudeMax}.
+         */
+        Fixed
+    };
+    /** How to scale values to 8-bit or 16-bit pixels.  Apart from {@link
+     * Scaling#Slice Slice}, the pixels are made without making floating point
+     * pixels first, and the range is also used as the display range of 32-bit
+     * images.
+     */
+    public Scaling scaling = Scaling.Slice;
+    /** The amplitude that is the lowest pixel value, if {@link scaling} is
+     * {@link Scaling#Fixed Fixed}.
+     */
+    public double amplitudeMin = 0;
+    /** The amplitude that is the highest pixel value, if {@link scaling} is
+     * {@link Scaling#Fixed Fixed}.
+     */
+    public double amplitudeMax = 1;
+    /** The phase that is the lowest pixel value, if {@link scaling} is
+     * {@link Scaling#Fixed Fixed}.
+     */
+    public double phaseMin = -Math.PI;
+    /** The phase that is the highest pixel value, if {@link scaling} is
+     * {@link Scaling#Fixed Fixed}.
+     */
+    public double phaseMax = Math.PI;
+    /** The real part that is the lowest pixel value, if {@link scaling} is
+     * {@link Scaling#Fixed Fixed}.
+     */
+    public double realMin = -1;
+    /** The real part that is the highest pixel value, if {@link scaling} is
+     * {@link Scaling#Fixed Fixed}.
+     */
+    public double realMax = 1;
+    /** The imaginary part that is the lowest pixel value, if {@link scaling}
+     * is {@link Scaling#Fixed Fixed}.
+     */
+    public double imaginaryMin = -1;
+    /** The imaginary part that is the highest pixel value, if {@link scaling}
+     * is {@link Scaling#Fixed Fixed}.
+     */
+    public double imaginaryMax = 1;
+    /** Whether to find the phase with {@link
+     * edu.pdx.imagej.reconstruction.FastMath#atan2 FastMath.atan2}, which is
+     * off by at most {@link
+     * edu.pdx.imagej.reconstruction.FastMath#SC_atan2Error SC_atan2Error}
+     * radians.  That is much less than one step of an 8-bit phase image.
+     */
+    public boolean approximatePhase;
+    /** The part of the hologram to output, in the hologram's pixels, or
+     * <code>null</code> for all of it.  Only this part is ever extracted,
+     * stored, or written, and the calibration's origin is moved so that the
+     * output lines up with the hologram.  The hologram is still propagated as
+     * a whole.
+     */
+    public Rectangle crop;
+    /** Whether to use the bounds of the hologram's selection as {@link crop}
+     * if it is <code>null</code>.  Without a selection, all of the hologram
+     * is output.
+     */
+    public boolean cropToSelection;
+    /** How many pixels on a side are averaged into each output pixel.  The
+     * complex values are averaged before the amplitude, phase, and so on are
+     * found, and any pixels left over at the right and bottom edges are
+     * dropped.
+     */
+    public int binning = 1;
     /** Whether you should save the result to a file, or use a user-supplied
      * function with the result.
      */
     public boolean saveToFile;
+    /** Whether to keep the result in a scratch file on disk instead of in
+     * memory, if {@link saveToFile} is <code>false</code>.  The result is
+     * then a virtual stack, so results larger than memory can still be looked
+     * at.
+     */
+    public boolean diskBacked;
+    /** Whether to only reconstruct each slice when it is looked at, if {@link
+     * saveToFile} is <code>false</code>.  The result is shown right away as a
+     * virtual hyperstack, and the most recently viewed slices are kept in
+     * memory.
+     */
+    public boolean lazy;
     /** Enumeration specifying what directory structure to do
      */
     public enum DirStructure {
@@ -59,11 +169,40 @@ public class ResultOptions {
         /** Save with the filename "z.tiff" (all t slices will be in one image
          * file)
          */
-        Z
+        Z,
+        /** Save each output as one chunked (t, z, y, x) volume, in the N5
+         * format, which can be read with {@link ChunkedReader}.  Each chunk
+         * is its own file, so parts of the volume can be read without reading
+         * the rest of it.
+         */
+        Chunked
     };
     /** What directory structure to have (defaults to <code>ZT</code>)
      */
     public DirStructure dirStructure = DirStructure.ZT;
+    /** Enumeration specifying what precision to write raw complex fields
+     * with.
+     */
+    public enum RawComplex {
+        /** Don't write raw complex fields (the default) */
+        None,
+        /** Write the real and imaginary parts as 32-bit floats */
+        Float32,
+        /** Write the real and imaginary parts as 64-bit doubles */
+        Float64
+    };
+    /** Whether to write the complex field itself, if {@link saveToFile} is
+     * <code>true</code>.  Every t and z slice is written to the one file
+     * <code>Complex.raw</code> in {@link saveDirectory}, which can be read with
+     * {@link RawComplexReader}.  This is in addition to any images.
+     */
+    public RawComplex rawComplex = RawComplex.None;
+    /** Whether to compress the files that are saved, if {@link saveToFile}
+     * is <code>true</code>.  Tiff files are deflated in strips, which are
+     * compressed in parallel, and {@link DirStructure#Chunked Chunked} output
+     * is gzipped by chunk.  Compressed tiff files can't be larger than 4GB.
+     */
+    public boolean compress;
     /** What directory to save to, if {@link saveToFile} is <code>true</code>.
      */
     public String saveDirectory;
@@ -83,4 +222,16 @@ public class ResultOptions {
      * <code>false</code>.  It defaults to showing the ImagePlus.
      */
     public Consumer<ImagePlus> imaginaryFunc = (ImagePlus imp) -> imp.show();
+    /** Function to call for each of the projections if {@link saveToFile} is
+     * <code>false</code>.  It defaults to showing the ImagePlus.
+     */
+    public Consumer<ImagePlus> projectionFunc = (ImagePlus imp) -> imp.show();
+    /** Function to also call for each output if the result is {@link lazy},
+     * or <code>null</code> (the default) to not.  It is given the name of the
+     * output ("Amplitude", "Phase", "Real", or "Imaginary") and an ImgLib2
+     * cell image of it, with dimensions x, y, z, and t.  Each cell is one
+     * slice, reconstructed when it is first used, and the slices are shared
+     * with the images given to the other functions.
+     */
+    public BiConsumer<String, Img<?>> imgFunc;
 }
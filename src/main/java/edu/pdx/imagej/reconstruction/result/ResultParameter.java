@@ -30,11 +30,54 @@ class ResultParameter extends HoldingParameter<ResultOptions> {
         M_phase = addParameter(new BoolParameter("Phase", false));
         M_real = addParameter(new BoolParameter("Real", false));
         M_imaginary = addParameter(new BoolParameter("Imaginary", false));
+        M_projection = addParameter(new BoolParameter(
+            "Z-Projections of Amplitude", false));
         String[] choices = {"8-bit", "16-bit", "32-bit"};
         M_resultType = addParameter(new ChoiceParameter("Output Image Type", choices));
+        String[] scalings = {"Each slice", "First slice", "Fixed range"};
+        M_scaling = addParameter(new ChoiceParameter("8/16-bit Scaling",
+                                                     scalings));
+        // Amplitude is never negative, so it gets its own range
+        M_fixedAmpMin = addParameter(new DoubleParameter(
+            0.0, "Fixed_amplitude_minimum"));
+        M_fixedAmpMax = addParameter(new DoubleParameter(
+            1.0, "Fixed_amplitude_maximum"));
+        M_fixedMin = addParameter(new DoubleParameter(-1.0, "Fixed_minimum"));
+        M_fixedMax = addParameter(new DoubleParameter(1.0, "Fixed_maximum"));
+        M_fixedAmpMin.setNewVisibility(false);
+        M_fixedAmpMax.setNewVisibility(false);
+        M_fixedMin.setNewVisibility(false);
+        M_fixedMax.setNewVisibility(false);
+        M_approximatePhase = addParameter(new BoolParameter(
+            "Fast approximate phase", false));
+        M_cropToSelection = addParameter(new BoolParameter(
+            "Crop to the hologram's selection", false));
+        M_binning = addParameter(new IntParameter(1, "Binning"));
+        M_binning.setBounds(1, Integer.MAX_VALUE);
+        M_diskBacked = addParameter(new BoolParameter(
+            "Keep result on disk (virtual stack)", false));
+        M_lazy = addParameter(new BoolParameter(
+            "Reconstruct slices only when viewed", false));
+        String[] rawChoices = {"None", "32-bit", "64-bit"};
+        M_rawComplex = addParameter(new ChoiceParameter(
+            "Raw Complex Output (when saving)", rawChoices));
+        M_compress = addParameter(new BoolParameter(
+            "Compress saved files", false));
         M_save = addParameter(new SaveParameter());
     }
     @Override
+    public void readFromDialog()
+    {
+        super.readFromDialog();
+        updateVisibility();
+    }
+    @Override
+    public void readFromPrefs(Class<?> c, String name)
+    {
+        super.readFromPrefs(c, name);
+        updateVisibility();
+    }
+    @Override
     public ResultOptions getValue()
     {
         ResultOptions result = new ResultOptions();
@@ -42,6 +85,7 @@ class ResultParameter extends HoldingParameter<ResultOptions> {
         result.phase = M_phase.getValue();
         result.real = M_real.getValue();
         result.imaginary = M_imaginary.getValue();
+        result.projection = M_projection.getValue();
         String type = M_resultType.getValue();
         if (type.equals("8-bit")) {
             result.type = ResultOptions.Type.Type8Bit;
@@ -58,6 +102,52 @@ class ResultParameter extends HoldingParameter<ResultOptions> {
                 + "output type received was " + type + "."
             );
         }
+        String scaling = M_scaling.getValue();
+        if (scaling.equals("Each slice")) {
+            result.scaling = ResultOptions.Scaling.Slice;
+        }
+        else if (scaling.equals("First slice")) {
+            result.scaling = ResultOptions.Scaling.First;
+        }
+        else if (scaling.equals("Fixed range")) {
+            result.scaling = ResultOptions.Scaling.Fixed;
+        }
+        else {
+            throw new RuntimeException(
+                "Internal error when trying to read the scaling.  The "
+                + "scaling received was " + scaling + "."
+            );
+        }
+        // Phase always keeps its natural range here, and the real and
+        // imaginary parts share a range
+        result.amplitudeMin = M_fixedAmpMin.getValue();
+        result.amplitudeMax = M_fixedAmpMax.getValue();
+        result.realMin = M_fixedMin.getValue();
+        result.realMax = M_fixedMax.getValue();
+        result.imaginaryMin = M_fixedMin.getValue();
+        result.imaginaryMax = M_fixedMax.getValue();
+        result.approximatePhase = M_approximatePhase.getValue();
+        result.cropToSelection = M_cropToSelection.getValue();
+        result.binning = M_binning.getValue();
+        result.diskBacked = M_diskBacked.getValue();
+        result.lazy = M_lazy.getValue();
+        String raw = M_rawComplex.getValue();
+        if (raw.equals("None")) {
+            result.rawComplex = ResultOptions.RawComplex.None;
+        }
+        else if (raw.equals("32-bit")) {
+            result.rawComplex = ResultOptions.RawComplex.Float32;
+        }
+        else if (raw.equals("64-bit")) {
+            result.rawComplex = ResultOptions.RawComplex.Float64;
+        }
+        else {
+            throw new RuntimeException(
+                "Internal error when trying to read the raw complex output.  "
+                + "The raw complex output received was " + raw + "."
+            );
+        }
+        result.compress = M_compress.getValue();
         result.saveToFile = M_save.getValue();
         result.saveDirectory = M_save.getDirectory();
         String dirStructure = M_save.getDirStructure();
@@ -73,6 +163,9 @@ class ResultParameter extends HoldingParameter<ResultOptions> {
         else if (dirStructure.equals("z.tiff")) {
             result.dirStructure = ResultOptions.DirStructure.Z;
         }
+        else if (dirStructure.equals("chunked (N5)")) {
+            result.dirStructure = ResultOptions.DirStructure.Chunked;
+        }
         else {
             throw new RuntimeException(
                 "Internal error when trying to read the directory structure.  "
@@ -82,10 +175,32 @@ class ResultParameter extends HoldingParameter<ResultOptions> {
         return result;
     }
 
+    private void updateVisibility()
+    {
+        boolean fixed = M_scaling.getValue().equals("Fixed range");
+        M_fixedAmpMin.setNewVisibility(fixed);
+        M_fixedAmpMax.setNewVisibility(fixed);
+        M_fixedMin.setNewVisibility(fixed);
+        M_fixedMax.setNewVisibility(fixed);
+    }
+
     private BoolParameter   M_amplitude;
     private BoolParameter   M_phase;
     private BoolParameter   M_real;
     private BoolParameter   M_imaginary;
+    private BoolParameter   M_projection;
     private ChoiceParameter M_resultType;
+    private ChoiceParameter M_scaling;
+    private DoubleParameter M_fixedAmpMin;
+    private DoubleParameter M_fixedAmpMax;
+    private DoubleParameter M_fixedMin;
+    private DoubleParameter M_fixedMax;
+    private BoolParameter   M_approximatePhase;
+    private BoolParameter   M_cropToSelection;
+    private IntParameter    M_binning;
+    private BoolParameter   M_diskBacked;
+    private BoolParameter   M_lazy;
+    private ChoiceParameter M_rawComplex;
+    private BoolParameter   M_compress;
     private SaveParameter   M_save;
 }
@@ -80,7 +80,8 @@ class SaveParameter extends HoldingParameter<Boolean> {
         "z/t.tiff",
         "t/z.tiff",
         "t.tiff",
-        "z.tiff"
+        "z.tiff",
+        "chunked (N5)"
     };
 
     public class DirectoryParameter extends AbstractDParameter<String> implements ActionListener {
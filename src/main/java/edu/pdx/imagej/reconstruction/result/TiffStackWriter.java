@@ -0,0 +1,479 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+
+import ij.ImageJ;
+import ij.Prefs;
+import ij.measure.Calibration;
+import ij.process.ImageProcessor;
+
+// A multi-page tiff file whose slices are written directly into it, one at a
+// time, in any order.  Because the number of slices, their size, and their
+// labels are all known before any of them are computed, every offset in the
+// file can be laid out up front, and each slice is written exactly once right
+// where it belongs.  The layout is the same as ImageJ's own TiffEncoder, so
+// ImageJ reads these files (labels, calibration, and all) as if it had saved
+// them itself.
+//
+// TIFF offsets are only 32 bits.  If the file is too large for them, only the
+// first image's directory is written, and ImageJ finds the rest of the images
+// using the "images=" line of the description, just like it does for the
+// stacks larger than 4GB that it saves itself.
+//
+// If the slices are compressed, their sizes aren't known until they're
+// written, so each one is put wherever the file ends when it is done, and the
+// directories are only written by close.  Each slice is split into strips of
+// about SC_stripSize bytes that are deflated in parallel, and then the whole
+// slice is written at once.  ImageJ can read these too, but it can't use the
+// trick above, so compressed files can't be larger than 4GB.  Room is kept
+// for the directories, so a slice that would go past that fails before it is
+// written, rather than close failing after everything was.  ImageJ also
+// doesn't set the slice labels of stacks like these, although it does read
+// them.
+//
+// The file is kept open until close, which must always be called.
+class TiffStackWriter {
+    // Create the file and write everything but the pixels.
+    //
+    // bitDepth must be 8, 16, or 32.  There must be one label for each slice.
+    // cal may be null.
+    TiffStackWriter(Path path, int width, int height, int bitDepth,
+                    String[] labels, Calibration cal) throws IOException
+    {
+        this(path, width, height, bitDepth, labels, cal, false);
+    }
+    // The same, but compressing the slices if compress is true.  labels may
+    // be null if the slices have no labels.
+    TiffStackWriter(Path path, int width, int height, int bitDepth,
+                    String[] labels, Calibration cal, boolean compress)
+        throws IOException
+    {
+        M_path = path;
+        M_width = width;
+        M_height = height;
+        M_bitDepth = bitDepth;
+        M_numSlices = labels == null ? 1 : labels.length;
+        M_labels = labels != null;
+        M_compress = compress;
+        M_order = Prefs.intelByteOrder ? ByteOrder.LITTLE_ENDIAN
+                                       : ByteOrder.BIG_ENDIAN;
+        M_imageSize = (long)width * height * (bitDepth / 8);
+        if (M_imageSize > Integer.MAX_VALUE) {
+            throw new IOException("Slices of " + width + "x" + height
+                + " are too large to save as tiff.");
+        }
+        M_cal = cal != null && cal.scaled() ? cal : null;
+        if (compress) {
+            int rowSize = width * (bitDepth / 8);
+            M_rowsPerStrip = Math.min(height,
+                                      Math.max(1, SC_stripSize / rowSize));
+        }
+        else M_rowsPerStrip = height;
+        M_strips = (height + M_rowsPerStrip - 1) / M_rowsPerStrip;
+        M_stripOffsets = compress ? new long[M_numSlices][] : null;
+        M_stripCounts = compress ? new int[M_numSlices][] : null;
+
+        M_description = makeDescription();
+        int labelSize = 0;
+        if (M_labels) {
+            for (String label : labels) labelSize += label.length() * 2;
+        }
+        M_metaDataCounts = M_labels ? M_numSlices + 1 : 0;
+        M_metaDataSize = M_labels ? 4 + 8 + labelSize : 0;
+
+        int entries = M_labels ? 13 : 11;
+        if (M_cal != null) entries += 3;
+        if (bitDepth == 32) ++entries;
+        M_entries = entries;
+        int ifdSize = ifdSize(true);
+        int laterIfdSize = ifdSize(false);
+        // Compressed files have their directories at the end
+        M_descriptionOffset = SC_headerSize + (compress ? 0 : ifdSize);
+        M_scaleOffset = M_descriptionOffset + M_description.length;
+        int scaleSize = M_cal != null ? 16 : 0;
+        M_metaDataOffset = M_scaleOffset + scaleSize;
+        M_imageOffset = M_metaDataOffset + M_metaDataCounts * 4
+                      + M_metaDataSize;
+        M_end = M_imageOffset;
+        long nextIfd = M_numSlices > 1 && !compress
+            ? M_imageOffset + M_imageSize * M_numSlices : 0;
+        if (nextIfd + (long)M_numSlices * ifdSize >= 0xffffffffL) nextIfd = 0;
+
+        ByteBuffer buf = ByteBuffer.allocate((int)M_imageOffset).order(M_order);
+        byte endian = M_order == ByteOrder.LITTLE_ENDIAN ? (byte)'I'
+                                                         : (byte)'M';
+        buf.put(endian).put(endian);
+        buf.putShort((short)42);
+        // For compressed files, this is filled in by close
+        buf.putInt(compress ? 0 : SC_headerSize);
+        if (!compress) {
+            putIfd(buf, M_imageOffset, (int)M_imageSize, nextIfd, true);
+        }
+        buf.put(M_description);
+        if (M_cal != null) {
+            double xScale = 1.0 / M_cal.pixelWidth;
+            double yScale = 1.0 / M_cal.pixelHeight;
+            double scale = 1000000.0;
+            if (xScale * scale > Integer.MAX_VALUE
+                    || yScale * scale > Integer.MAX_VALUE) {
+                scale = (int)(Integer.MAX_VALUE / Math.max(xScale, yScale));
+            }
+            buf.putInt((int)(xScale * scale)).putInt((int)scale);
+            buf.putInt((int)(yScale * scale)).putInt((int)scale);
+        }
+        if (M_labels) {
+            buf.putInt(4 + 8);
+            for (String label : labels) buf.putInt(label.length() * 2);
+            buf.putInt(SC_magicNumber);
+            buf.putInt(SC_labels);
+            buf.putInt(M_numSlices);
+            for (String label : labels) {
+                for (int i = 0; i < label.length(); ++i) {
+                    buf.putChar(label.charAt(i));
+                }
+            }
+        }
+        buf.flip();
+
+        M_channel = FileChannel.open(M_path, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeFully(M_channel, buf, 0);
+            // The rest of the directories go after all of the pixels.  They are
+            // written now too, so that the slices are all that is left.
+            if (nextIfd != 0) {
+                ByteBuffer ifds = ByteBuffer
+                    .allocate(laterIfdSize * (M_numSlices - 1)).order(M_order);
+                for (int i = 1; i < M_numSlices; ++i) {
+                    long next = i == M_numSlices - 1
+                        ? 0 : nextIfd + (long)laterIfdSize * i;
+                    putIfd(ifds, M_imageOffset + M_imageSize * i,
+                           (int)M_imageSize, next, false);
+                }
+                ifds.flip();
+                writeFully(M_channel, ifds, nextIfd);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            M_channel.close();
+            throw e;
+        }
+    }
+    // Write the slice at index (starting from zero).  proc must have the width,
+    // height, and bit depth given to the constructor.  Different slices may be
+    // written at the same time from different threads.
+    void writeSlice(int index, ImageProcessor proc) throws IOException
+    {
+        if (index < 0 || index >= M_numSlices) {
+            throw new IndexOutOfBoundsException("Slice " + index
+                + " is outside of a stack of " + M_numSlices + " slices.");
+        }
+        if (proc.getWidth() != M_width || proc.getHeight() != M_height
+                || proc.getBitDepth() != M_bitDepth) {
+            throw new IllegalArgumentException("The slice does not match the "
+                + "format of " + M_path + ".");
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int)M_imageSize).order(M_order);
+        if (M_bitDepth == 8) buf.put((byte[])proc.getPixels());
+        else if (M_bitDepth == 16) {
+            buf.asShortBuffer().put((short[])proc.getPixels());
+        }
+        else buf.asFloatBuffer().put((float[])proc.getPixels());
+        buf.rewind();
+        if (M_compress) {
+            writeCompressed(index, buf.array());
+            return;
+        }
+        writeFully(M_channel, buf, M_imageOffset + M_imageSize * index);
+    }
+    // Write the directories of a compressed file, once every slice has been
+    // written, and close the file.  Calling it again does nothing.
+    void close() throws IOException
+    {
+        if (!M_channel.isOpen()) return;
+        try {
+            if (M_compress) writeDirectories();
+        }
+        finally {
+            M_channel.close();
+        }
+    }
+
+    private void writeDirectories() throws IOException
+    {
+        int arraySize = M_strips > 1 ? M_strips * 8 : 0;
+        int firstSize = ifdSize(true) + arraySize;
+        int laterSize = ifdSize(false) + arraySize;
+        long start;
+        synchronized (this) {
+            start = M_end;
+        }
+        start += start % 2; // Directories must start on a word boundary
+        long size = directoriesSize();
+        ByteBuffer buf = ByteBuffer.allocate((int)size).order(M_order);
+        long position = start;
+        for (int i = 0; i < M_numSlices; ++i) {
+            long[] offsets = M_stripOffsets[i];
+            int[] counts = M_stripCounts[i];
+            if (offsets == null) {
+                offsets = new long[M_strips];
+                counts = new int[M_strips];
+            }
+            boolean first = i == 0;
+            long next = i == M_numSlices - 1
+                ? 0 : position + (first ? firstSize : laterSize);
+            long arrays = position + ifdSize(first);
+            if (M_strips == 1) {
+                putIfd(buf, offsets[0], counts[0], next, first);
+            }
+            else {
+                putIfd(buf, arrays, (int)(arrays + M_strips * 4), next, first);
+                for (long offset : offsets) buf.putInt((int)offset);
+                for (int count : counts) buf.putInt(count);
+            }
+            position = next;
+        }
+        buf.flip();
+        ByteBuffer header = ByteBuffer.allocate(4).order(M_order);
+        header.putInt((int)start);
+        header.flip();
+        writeFully(M_channel, buf, start);
+        writeFully(M_channel, header, 4);
+    }
+    // The size of all of the directories of a compressed file
+    private long directoriesSize()
+    {
+        int arraySize = M_strips > 1 ? M_strips * 8 : 0;
+        return ifdSize(true) + arraySize
+             + (long)(ifdSize(false) + arraySize) * (M_numSlices - 1);
+    }
+
+    private void writeCompressed(int index, byte[] data) throws IOException
+    {
+        final int stripSize = M_rowsPerStrip * M_width * (M_bitDepth / 8);
+        byte[][] strips = IntStream.range(0, M_strips).parallel()
+            .mapToObj(i -> deflate(data, i * stripSize,
+                Math.min(stripSize, data.length - i * stripSize)))
+            .toArray(byte[][]::new);
+        int total = 0;
+        for (byte[] strip : strips) total += strip.length;
+        ByteBuffer buf = ByteBuffer.allocate(total);
+        for (byte[] strip : strips) buf.put(strip);
+        buf.flip();
+        long position;
+        synchronized (this) {
+            position = M_end;
+            // The directories go after every slice, on a word boundary
+            if (position + total + 1 + directoriesSize() >= 0xffffffffL) {
+                throw new IOException(M_path + " is too large to save "
+                    + "compressed.");
+            }
+            M_end += total;
+        }
+        writeFully(M_channel, buf, position);
+        long[] offsets = new long[M_strips];
+        int[] counts = new int[M_strips];
+        for (int i = 0; i < M_strips; ++i) {
+            offsets[i] = position;
+            counts[i] = strips[i].length;
+            position += counts[i];
+        }
+        synchronized (this) {
+            M_stripOffsets[index] = offsets;
+            M_stripCounts[index] = counts;
+        }
+    }
+    private static byte[] deflate(byte[] data, int offset, int length)
+    {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            byte[] result = new byte[length + length / 1000 + 64];
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, size * 2);
+                }
+                size += deflater.deflate(result, size, result.length - size);
+            }
+            return Arrays.copyOf(result, size);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private int ifdSize(boolean first)
+    {
+        int entries = first || !M_labels ? M_entries : M_entries - 2;
+        return 2 + entries * 12 + 4;
+    }
+    // Only the first directory has the metadata.  The others point to the
+    // first's description and scale, like ImageJ does.
+    //
+    // If there is one strip, stripOffsets and stripCounts are the strip's
+    // offset and size.  Otherwise, they are where the arrays of them are.
+    private void putIfd(ByteBuffer buf, long stripOffsets, int stripCounts,
+                        long nextIfd, boolean first)
+    {
+        buf.putShort((short)(first || !M_labels ? M_entries
+                                                : M_entries - 2));
+        putEntry(buf, SC_newSubfileType, 4, 1, 0);
+        putEntry(buf, SC_imageWidth, 4, 1, M_width);
+        putEntry(buf, SC_imageLength, 4, 1, M_height);
+        putEntry(buf, SC_bitsPerSample, 3, 1, M_bitDepth);
+        putEntry(buf, SC_compression, 3, 1,
+                 M_compress ? SC_deflate : SC_uncompressed);
+        putEntry(buf, SC_photoInterp, 3, 1, 1);
+        putEntry(buf, SC_imageDescription, 2, M_description.length,
+                 M_descriptionOffset);
+        putEntry(buf, SC_stripOffsets, 4, M_strips, (int)stripOffsets);
+        putEntry(buf, SC_samplesPerPixel, 3, 1, 1);
+        putEntry(buf, SC_rowsPerStrip, 3, 1, M_rowsPerStrip);
+        putEntry(buf, SC_stripByteCount, 4, M_strips, stripCounts);
+        if (M_cal != null) {
+            putEntry(buf, SC_xResolution, 5, 1, M_scaleOffset);
+            putEntry(buf, SC_yResolution, 5, 1, M_scaleOffset + 8);
+            int unit = 1;
+            if (M_cal.getUnit().equals("inch")) unit = 2;
+            else if (M_cal.getUnit().equals("cm")) unit = 3;
+            putEntry(buf, SC_resolutionUnit, 3, 1, unit);
+        }
+        if (M_bitDepth == 32) putEntry(buf, SC_sampleFormat, 3, 1, 3);
+        if (first && M_labels) {
+            putEntry(buf, SC_metaDataByteCounts, 4, M_metaDataCounts,
+                     M_metaDataOffset);
+            putEntry(buf, SC_metaData, 1, M_metaDataSize,
+                     M_metaDataOffset + M_metaDataCounts * 4);
+        }
+        buf.putInt((int)nextIfd);
+    }
+    private static void putEntry(ByteBuffer buf, int tag, int type, int count,
+                                 int value)
+    {
+        buf.putShort((short)tag);
+        buf.putShort((short)type);
+        buf.putInt(count);
+        if (count == 1 && type == 3) {
+            buf.putShort((short)value);
+            buf.putShort((short)0);
+        }
+        else buf.putInt(value);
+    }
+    // The same as what ImageJ writes for a plain stack, mostly
+    private byte[] makeDescription()
+    {
+        StringBuilder result = new StringBuilder();
+        result.append("ImageJ=").append(ImageJ.VERSION).append('\n');
+        if (M_numSlices > 1) {
+            // Older versions of ImageJ take "images=" to mean that the slices
+            // are one after another, so it is left out when they may not be
+            if (!M_compress) {
+                result.append("images=").append(M_numSlices).append('\n');
+            }
+            result.append("slices=").append(M_numSlices).append('\n');
+        }
+        if (M_cal != null) {
+            String unit = "unit=" + M_cal.getUnit();
+            for (int i = 0; i < unit.length(); ++i) {
+                char c = unit.charAt(i);
+                if (c >= 0x20 && c < 0x7f && c != '\\') result.append(c);
+                else result.append(String.format("\\u%04X", (int)c));
+            }
+            result.append('\n');
+        }
+        if (M_numSlices > 1) result.append("loop=false\n");
+        result.append((char)0);
+        byte[] bytes = new byte[result.length()];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte)result.charAt(i);
+        }
+        return bytes;
+    }
+    private static void writeFully(FileChannel channel, ByteBuffer buf,
+                                   long position) throws IOException
+    {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    private static final int SC_headerSize = 8;
+    private static final int SC_stripSize = 64 * 1024;
+    private static final int SC_uncompressed = 1;
+    private static final int SC_deflate = 8;
+    private static final int SC_newSubfileType = 254;
+    private static final int SC_imageWidth = 256;
+    private static final int SC_imageLength = 257;
+    private static final int SC_bitsPerSample = 258;
+    private static final int SC_compression = 259;
+    private static final int SC_photoInterp = 262;
+    private static final int SC_imageDescription = 270;
+    private static final int SC_stripOffsets = 273;
+    private static final int SC_samplesPerPixel = 277;
+    private static final int SC_rowsPerStrip = 278;
+    private static final int SC_stripByteCount = 279;
+    private static final int SC_xResolution = 282;
+    private static final int SC_yResolution = 283;
+    private static final int SC_resolutionUnit = 296;
+    private static final int SC_sampleFormat = 339;
+    private static final int SC_metaDataByteCounts = 50838;
+    private static final int SC_metaData = 50839;
+    private static final int SC_magicNumber = 0x494a494a; // "IJIJ"
+    private static final int SC_labels = 0x6c61626c; // "labl"
+
+    private final Path M_path;
+    private final FileChannel M_channel;
+    private final int M_width;
+    private final int M_height;
+    private final int M_bitDepth;
+    private final int M_numSlices;
+    private final boolean M_labels;
+    private final boolean M_compress;
+    private final int M_rowsPerStrip;
+    private final int M_strips;
+    private final ByteOrder M_order;
+    private final long M_imageSize;
+    private final Calibration M_cal;
+    private final byte[] M_description;
+    private final int M_metaDataCounts;
+    private final int M_metaDataSize;
+    private final int M_entries;
+    private final int M_descriptionOffset;
+    private final int M_scaleOffset;
+    private final int M_metaDataOffset;
+    private final long M_imageOffset;
+    // Where the file ends so far, and where each strip of each slice is, when
+    // compressing
+    private long M_end;
+    private final long[][] M_stripOffsets;
+    private final int[][] M_stripCounts;
+}
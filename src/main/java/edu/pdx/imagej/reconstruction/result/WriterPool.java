@@ -0,0 +1,101 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// A small pool of threads that write slices to disk, so that the
+// reconstruction doesn't have to wait on the disk for every slice.  Only so
+// many slices can be waiting to be written at once; after that, whoever is
+// submitting waits for one to finish, so that a slow disk can't make the
+// slices pile up in memory.
+class WriterPool {
+    // Something that writes to disk
+    interface Write {
+        void run() throws IOException;
+    }
+    WriterPool(int threads, int capacity)
+    {
+        M_executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread result = new Thread(r, "Reconstruction result writer");
+            result.setDaemon(true);
+            return result;
+        });
+        M_slots = new Semaphore(capacity);
+    }
+    // Write in the background, waiting first if the pool is full.  If a write
+    // that was submitted before failed, its exception is thrown here instead.
+    void submit(Write write) throws IOException
+    {
+        checkFailure();
+        M_slots.acquireUninterruptibly();
+        try {
+            M_executor.execute(() -> {
+                try {
+                    write.run();
+                }
+                catch (IOException | RuntimeException e) {
+                    M_failure.compareAndSet(null, e);
+                }
+                finally {
+                    M_slots.release();
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            M_slots.release();
+            throw e;
+        }
+    }
+    // Wait for everything to be written and stop the threads.  Nothing can be
+    // submitted after this.
+    void finish() throws IOException
+    {
+        M_executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (M_executor.awaitTermination(1, TimeUnit.SECONDS)) break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException
+    {
+        Exception failure = M_failure.get();
+        if (failure instanceof IOException) throw (IOException)failure;
+        if (failure != null) throw (RuntimeException)failure;
+    }
+
+    private final ExecutorService M_executor;
+    private final Semaphore M_slots;
+    private final AtomicReference<Exception> M_failure
+        = new AtomicReference<>();
+}
@@ -55,18 +55,28 @@ public class Status extends AbstractReconstructionPlugin
     /** Calculate the total number of image that will be created.
      */
     @Override public void processBeginning()
-        {M_totalSize = M_tSize * M_zSize;}
-    /** Show the progress of the plugin.
+    {
+        M_totalSize = M_tSize * M_zSize;
+        M_current = 0;
+        M_ended = false;
+    }
+    /** Show the progress of the plugin.  Nothing is shown after the command
+     * has ended, which is when a lazy result reconstructs the slices that are
+     * looked at.
      */
     @Override public void processPropagatedField(ReconstructionField field,
                                                    int t, DistanceUnitValue z)
     {
+        if (M_ended) return;
         String label = M_hologram.getStack().getSliceLabel(t);
         if (label == null) label = M_hologram.getTitle();
         P_status.showStatus(M_current, M_totalSize, "Processing " + label
             + " at z = " + String.format("%.3f", z.value()));
         ++M_current;
     }
+    /** Stop showing progress.
+     */
+    @Override public void processEnding() {M_ended = true;}
     @Override public Status duplicate() {return new Status();}
 
     private ImagePlus M_hologram;
@@ -74,5 +84,6 @@ public class Status extends AbstractReconstructionPlugin
     private int M_zSize;
     private int M_totalSize;
     private int M_current;
+    private boolean M_ended = false;
     @Parameter private StatusService P_status;
 }
@@ -0,0 +1,222 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+// ComplexKernels.Kernels done with the jdk.incubator.vector API.  This is only
+// compiled by the vector profile, and is loaded by ComplexKernels through
+// reflection, so nothing else may refer to it.
+//
+// Every vector holds whole complex numbers, with the real parts in the even
+// lanes and the imaginary parts in the odd lanes, just like the columns
+// themselves, so columns are loaded and stored directly.  Swapping each pair
+// of lanes, or copying one half of each pair into the other, then lines up
+// the parts that need to be multiplied together.  The operations are done in
+// the same order as in Scalar, so the results are exactly the same.  What is
+// left at the end of a column that doesn't fill a vector is done one pixel at
+// a time, and arg is left to Scalar.
+final class VectorComplexKernels extends ComplexKernels.Scalar {
+    VectorComplexKernels()
+    {
+        if (SC_lanes < 2) {
+            throw new UnsupportedOperationException(
+                "Vectors are too short to hold a complex number.");
+        }
+    }
+    @Override public void multiply(double[] column, double[] other)
+    {
+        final int length = column.length & ~1;
+        final int bound = SC_species.loopBound(length);
+        for (int i = 0; i < bound; i += SC_lanes) {
+            DoubleVector b = DoubleVector.fromArray(SC_species, other, i);
+            times(DoubleVector.fromArray(SC_species, column, i),
+                  b.rearrange(SC_reals), b.rearrange(SC_imags))
+                .intoArray(column, i);
+        }
+        for (int i = bound; i < length; i += 2) {
+            final double a = column[i];
+            final double b = column[i + 1];
+            final double c = other[i];
+            final double d = other[i + 1];
+            column[i] = a * c - b * d;
+            column[i + 1] = a * d + b * c;
+        }
+    }
+    @Override public void multiply(double[] column, double c, double d)
+    {
+        final int length = column.length & ~1;
+        final int bound = SC_species.loopBound(length);
+        final DoubleVector real = DoubleVector.broadcast(SC_species, c);
+        final DoubleVector imag = DoubleVector.broadcast(SC_species, d);
+        for (int i = 0; i < bound; i += SC_lanes) {
+            times(DoubleVector.fromArray(SC_species, column, i), real, imag)
+                .intoArray(column, i);
+        }
+        for (int i = bound; i < length; i += 2) {
+            final double a = column[i];
+            final double b = column[i + 1];
+            column[i] = a * c - b * d;
+            column[i + 1] = a * d + b * c;
+        }
+    }
+    @Override public void multiply(double[] column, double[] other,
+                                   double c, double d)
+    {
+        final int length = column.length & ~1;
+        final int bound = SC_species.loopBound(length);
+        final DoubleVector real = DoubleVector.broadcast(SC_species, c);
+        final DoubleVector imag = DoubleVector.broadcast(SC_species, d);
+        for (int i = 0; i < bound; i += SC_lanes) {
+            DoubleVector b = times(
+                DoubleVector.fromArray(SC_species, other, i), real, imag);
+            times(DoubleVector.fromArray(SC_species, column, i),
+                  b.rearrange(SC_reals), b.rearrange(SC_imags))
+                .intoArray(column, i);
+        }
+        for (int i = bound; i < length; i += 2) {
+            final double a = column[i];
+            final double b = column[i + 1];
+            final double e = other[i] * c - other[i + 1] * d;
+            final double f = other[i] * d + other[i + 1] * c;
+            column[i] = a * e - b * f;
+            column[i + 1] = a * f + b * e;
+        }
+    }
+    @Override public void divide(double[] column, double[] other)
+    {
+        final int length = column.length & ~1;
+        final int bound = SC_species.loopBound(length);
+        for (int i = 0; i < bound; i += SC_lanes) {
+            DoubleVector b = DoubleVector.fromArray(SC_species, other, i);
+            over(DoubleVector.fromArray(SC_species, column, i),
+                 b.rearrange(SC_reals), b.rearrange(SC_imags))
+                .intoArray(column, i);
+        }
+        for (int i = bound; i < length; i += 2) {
+            final double a = column[i];
+            final double b = column[i + 1];
+            final double c = other[i];
+            final double d = other[i + 1];
+            final double denom = c*c + d*d;
+            column[i] = (a * c + b * d) / denom;
+            column[i + 1] = (b * c - a * d) / denom;
+        }
+    }
+    @Override public void divide(double[] column, double c, double d)
+    {
+        final int length = column.length & ~1;
+        final int bound = SC_species.loopBound(length);
+        final DoubleVector real = DoubleVector.broadcast(SC_species, c);
+        final DoubleVector imag = DoubleVector.broadcast(SC_species, d);
+        for (int i = 0; i < bound; i += SC_lanes) {
+            over(DoubleVector.fromArray(SC_species, column, i), real, imag)
+                .intoArray(column, i);
+        }
+        final double denom = c*c + d*d;
+        for (int i = bound; i < length; i += 2) {
+            final double a = column[i];
+            final double b = column[i + 1];
+            column[i] = (a * c + b * d) / denom;
+            column[i + 1] = (b * c - a * d) / denom;
+        }
+    }
+    @Override public void amp(double[] column, double[] result)
+    {
+        final int bound = SC_species.loopBound(result.length);
+        for (int y = 0; y < bound; y += SC_lanes) {
+            amp2(column, y).sqrt().intoArray(result, y);
+        }
+        for (int y = bound; y < result.length; ++y) {
+            final double r = column[2 * y];
+            final double i = column[2 * y + 1];
+            result[y] = Math.sqrt(r*r + i*i);
+        }
+    }
+    @Override public void amp2(double[] column, double[] result)
+    {
+        final int bound = SC_species.loopBound(result.length);
+        for (int y = 0; y < bound; y += SC_lanes) {
+            amp2(column, y).intoArray(result, y);
+        }
+        for (int y = bound; y < result.length; ++y) {
+            final double r = column[2 * y];
+            final double i = column[2 * y + 1];
+            result[y] = r*r + i*i;
+        }
+    }
+
+    // a * (real + i imag), where a is interleaved and real and imag hold the
+    // parts of b in both lanes of each pair
+    private static DoubleVector times(DoubleVector a, DoubleVector real,
+                                      DoubleVector imag)
+    {
+        // ac, bc and bd, ad
+        DoubleVector straight = a.mul(real);
+        DoubleVector crossed = a.rearrange(SC_swap).mul(imag);
+        return straight.sub(crossed).blend(straight.add(crossed), SC_odd);
+    }
+    // a / (real + i imag), the same way as times
+    private static DoubleVector over(DoubleVector a, DoubleVector real,
+                                     DoubleVector imag)
+    {
+        DoubleVector denom = real.mul(real).add(imag.mul(imag));
+        DoubleVector straight = a.mul(real);
+        DoubleVector crossed = a.rearrange(SC_swap).mul(imag);
+        return straight.add(crossed).blend(straight.sub(crossed), SC_odd)
+                       .div(denom);
+    }
+    // |column|^2 for the pixels starting at y, one to a lane
+    private static DoubleVector amp2(double[] column, int y)
+    {
+        DoubleVector r = DoubleVector.fromArray(SC_species, column, 2 * y,
+                                                SC_pairs, 0);
+        DoubleVector i = DoubleVector.fromArray(SC_species, column, 2 * y + 1,
+                                                SC_pairs, 0);
+        return r.mul(r).add(i.mul(i));
+    }
+
+    private static final VectorSpecies<Double> SC_species
+        = DoubleVector.SPECIES_PREFERRED;
+    private static final int SC_lanes = SC_species.length();
+    // Swaps the two lanes of each pair
+    private static final VectorShuffle<Double> SC_swap
+        = VectorShuffle.fromOp(SC_species, i -> i ^ 1);
+    // Copies the even (real) lane of each pair into both
+    private static final VectorShuffle<Double> SC_reals
+        = VectorShuffle.fromOp(SC_species, i -> i & ~1);
+    // Copies the odd (imaginary) lane of each pair into both
+    private static final VectorShuffle<Double> SC_imags
+        = VectorShuffle.fromOp(SC_species, i -> i | 1);
+    private static final VectorMask<Double> SC_odd;
+    // 0, 2, 4, ..., to gather every other element
+    private static final int[] SC_pairs = new int[SC_lanes];
+    static {
+        boolean[] odd = new boolean[SC_lanes];
+        for (int i = 0; i < SC_lanes; ++i) {
+            odd[i] = i % 2 == 1;
+            SC_pairs[i] = 2 * i;
+        }
+        SC_odd = VectorMask.fromArray(SC_species, odd, 0);
+    }
+}
@@ -0,0 +1,111 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.Test;
+
+public class ComplexKernelsTest {
+    @Test public void testScalar()
+    {
+        check(new ComplexKernels.Scalar());
+    }
+    // Only run when built and run with the vector profile
+    @Test public void testVector()
+    {
+        ComplexKernels.Kernels vector = ComplexKernels.vector();
+        assumeTrue(vector != null);
+        check(vector);
+    }
+    @Test public void testSelected()
+    {
+        check(null);
+    }
+
+    // Check test against doing the arithmetic one pixel at a time, or check
+    // the static ComplexKernels methods if test is null.  The height is odd
+    // and not a multiple of any vector length, so that the ends of the columns
+    // are done too.
+    private static void check(ComplexKernels.Kernels test)
+    {
+        Random random = new Random(2);
+        final int height = 37;
+        double[] a = new double[height * 2];
+        double[] b = new double[height * 2];
+        for (int i = 0; i < height * 2; ++i) {
+            a[i] = random.nextGaussian();
+            b[i] = random.nextGaussian();
+        }
+        double[] product = a.clone();
+        double[] quotient = a.clone();
+        double[] scaled = a.clone();
+        double[] shrunk = a.clone();
+        double[] outer = a.clone();
+        double[] amp = new double[height];
+        double[] amp2 = new double[height];
+        double[] arg = new double[height];
+        if (test == null) {
+            ComplexKernels.multiply(product, b);
+            ComplexKernels.divide(quotient, b);
+            ComplexKernels.multiply(scaled, 0.3, -1.7);
+            ComplexKernels.divide(shrunk, 0.3, -1.7);
+            ComplexKernels.multiply(outer, b, 0.3, -1.7);
+            ComplexKernels.amp(a, amp);
+            ComplexKernels.amp2(a, amp2);
+            ComplexKernels.arg(a, arg);
+        }
+        else {
+            test.multiply(product, b);
+            test.divide(quotient, b);
+            test.multiply(scaled, 0.3, -1.7);
+            test.divide(shrunk, 0.3, -1.7);
+            test.multiply(outer, b, 0.3, -1.7);
+            test.amp(a, amp);
+            test.amp2(a, amp2);
+            test.arg(a, arg);
+        }
+        for (int y = 0; y < height; ++y) {
+            double r = a[2*y];
+            double i = a[2*y+1];
+            double c = b[2*y];
+            double d = b[2*y+1];
+            double denom = c*c + d*d;
+            assertEquals(r * c - i * d, product[2*y]);
+            assertEquals(r * d + i * c, product[2*y+1]);
+            assertEquals((r * c + i * d) / denom, quotient[2*y]);
+            assertEquals((i * c - r * d) / denom, quotient[2*y+1]);
+            assertEquals(r * 0.3 - i * -1.7, scaled[2*y]);
+            assertEquals(r * -1.7 + i * 0.3, scaled[2*y+1]);
+            denom = 0.3*0.3 + -1.7*-1.7;
+            assertEquals((r * 0.3 + i * -1.7) / denom, shrunk[2*y]);
+            assertEquals((i * 0.3 - r * -1.7) / denom, shrunk[2*y+1]);
+            double e = c * 0.3 - d * -1.7;
+            double f = c * -1.7 + d * 0.3;
+            assertEquals(r * e - i * f, outer[2*y]);
+            assertEquals(r * f + i * e, outer[2*y+1]);
+            assertEquals(Math.sqrt(r*r + i*i), amp[y]);
+            assertEquals(r*r + i*i, amp2[y]);
+            assertEquals(Math.atan2(i, r), arg[y]);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class FastMathTest {
+    @Test public void testAtan2Error()
+    {
+        Random random = new Random(3);
+        for (int n = 0; n < 1000000; ++n) {
+            // Both large and small values, in every quadrant
+            double y = random.nextGaussian() * Math.pow(10, random.nextInt(9));
+            double x = random.nextGaussian() * Math.pow(10, random.nextInt(9));
+            double error = Math.abs(FastMath.atan2(y, x) - Math.atan2(y, x));
+            assertTrue(error <= FastMath.SC_atan2Error,
+                       "atan2(" + y + ", " + x + ") was off by " + error);
+        }
+    }
+    @Test public void testAtan2Edges()
+    {
+        assertEquals(0, FastMath.atan2(0, 1));
+        assertEquals(0, FastMath.atan2(0, 0));
+        assertEquals(Math.PI, FastMath.atan2(0, -1));
+        assertEquals(-Math.PI, FastMath.atan2(-0.0, -1));
+        assertEquals(Math.PI / 2, FastMath.atan2(1, 0));
+        assertEquals(-Math.PI / 2, FastMath.atan2(-1, 0));
+        assertEquals(Math.PI / 4, FastMath.atan2(1, 1),
+                     FastMath.SC_atan2Error);
+    }
+}
@@ -0,0 +1,64 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction;
+
+import ij.process.ImageProcessor;
+
+import net.imglib2.img.array.ArrayImgs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+public class ImgStackTest {
+    @Test public void testSlices()
+    {
+        float[] data = {1, 2, 3, 4, 5, 6,
+                        7, 8, 9, 10, 11, 12};
+        ImgStack<?> test = new ImgStack<>(ArrayImgs.floats(data, 3, 2, 2));
+        assertEquals(3, test.getWidth());
+        assertEquals(2, test.getHeight());
+        assertEquals(2, test.getSize());
+        ImageProcessor proc = test.getProcessor(2);
+        assertEquals(7, proc.getf(0, 0));
+        assertEquals(9, proc.getf(2, 0));
+        assertEquals(10, proc.getf(0, 1));
+        assertEquals(3, test.getProcessor(1).getf(2, 0));
+        test.deleteSlice(1);
+        test.addSlice("", new float[6]);
+        test.setPixels(new float[6], 1);
+        assertEquals(2, test.getSize());
+        assertEquals(3, test.getProcessor(1).getf(2, 0));
+    }
+    @Test public void testTwoDimensions()
+    {
+        ImgStack<?> test
+            = new ImgStack<>(ArrayImgs.floats(new float[]{1, 2, 3, 4}, 2, 2));
+        assertEquals(1, test.getSize());
+        assertEquals(4, test.getProcessor(1).getf(1, 1));
+        assertThrows(IllegalArgumentException.class,
+                     () -> test.getProcessor(2));
+    }
+    @Test public void testDimensions()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new ImgStack<>(
+            ArrayImgs.floats(new float[]{1, 2}, 2)));
+    }
+}
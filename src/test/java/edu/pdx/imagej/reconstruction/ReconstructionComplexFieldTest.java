@@ -19,6 +19,9 @@
 
 package edu.pdx.imagej.reconstruction;
 
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
@@ -392,6 +395,79 @@ public class ReconstructionComplexFieldTest {
         assertEquals(quotient.getReal(1, 1), 0.2);
         assertEquals(quotient.getImag(1, 1), -3.9);
     }
+    @Test public void testMultiplySeparable()
+    {
+        double[][] values = {
+            {1, 0,   1,  2},
+            {0, 0,   8, -3.5}
+        };
+        ReconstructionComplexField field = createField(values);
+        // columns[1] * rows[1] = (0 + i)(1 + i) = -1 + i
+        field.multiplySeparableInPlace(new double[] {2, 0, 0, 1},
+                                       new double[] {1, 2, 1, 1});
+
+        assertEquals(field.getReal(0, 0), 2);
+        assertEquals(field.getImag(0, 0), 4);
+        assertEquals(field.getReal(0, 1), -2);
+        assertEquals(field.getImag(0, 1), 6);
+        // These can be -0
+        assertTrue(field.getReal(1, 0) == 0);
+        assertTrue(field.getImag(1, 0) == 0);
+        assertEquals(field.getReal(1, 1), -4.5);
+        assertEquals(field.getImag(1, 1), 11.5);
+    }
+    @Test public void testParallelSameAsSerial()
+    {
+        final int threshold = ReconstructionComplexField.getParallelThreshold();
+        try {
+            // Both even and odd sizes, because they shift differently
+            for (int[] size : new int[][]{{64, 48}, {63, 47}}) {
+                ReconstructionComplexField.setParallelThreshold(
+                    Integer.MAX_VALUE);
+                double[][][] serial = runOperations(size[0], size[1]);
+                ReconstructionComplexField.setParallelThreshold(0);
+                double[][][] parallel = runOperations(size[0], size[1]);
+                for (int i = 0; i < serial.length; ++i) {
+                    for (int x = 0; x < size[0]; ++x) {
+                        assertArrayEquals(serial[i][x], parallel[i][x]);
+                    }
+                }
+            }
+        }
+        finally {
+            ReconstructionComplexField.setParallelThreshold(threshold);
+        }
+    }
+    // Do most operations on a random field, returning the results
+    private double[][][] runOperations(int width, int height)
+    {
+        Random random = new Random(1);
+        double[][] values = new double[width][height * 2];
+        double[][] other = new double[width][height * 2];
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height * 2; ++y) {
+                values[x][y] = random.nextDouble() - 0.5;
+                other[x][y] = random.nextDouble() + 0.5;
+            }
+        }
+        ReconstructionComplexField field = createField(values);
+        field.shiftForward();
+        field.multiplyInPlace(createField(other));
+        field.shiftBackward();
+        field.divideInPlace(other);
+        field.addInPlace(other);
+        field.negateInPlace();
+        field.multiplyInPlace(0.5, -2);
+        field.divideInPlace(3, 1);
+        double[] columns = new double[width * 2];
+        for (int x = 0; x < width * 2; ++x) columns[x] = random.nextDouble();
+        field.multiplySeparableInPlace(columns, other[0]);
+        field.addInPlace(1, 2);
+        return new double[][][] {
+            field.copy().getField(), field.getAmp(), field.getAmp2(),
+            field.getArg(), field.getReal(), field.getImag()
+        };
+    }
 
     private ReconstructionComplexField createField(double[][] values)
     {
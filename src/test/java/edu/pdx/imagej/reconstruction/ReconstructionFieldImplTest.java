@@ -74,6 +74,43 @@ public class ReconstructionFieldImplTest {
         assertTrue(test.hasFourier(), "It should have a fourier when the field"
             + " is retrieved after it was gone.");
     }
+    @Test public void testView()
+    {
+        double[][] real = new double[][] {{1, 2}, {3, 4}};
+        double[][] imag = new double[][] {{5, 6}, {7, 8}};
+        ReconstructionFieldImpl test = new ReconstructionFieldImpl(real, imag);
+        ReconstructionComplexField fourier = test.fourier();
+        double[][] view = test.field().viewField();
+        assertEquals(4, view[1][2]);
+        assertTrue(test.hasFourier(), "Viewing the field should not count as "
+            + "changing it.");
+        assertTrue(test.fourier() == fourier, "Viewing the field should keep "
+            + "the same fourier.");
+        test.fourier().viewField();
+        assertTrue(test.hasField(), "Viewing the fourier should not count as "
+            + "changing it.");
+    }
+    @Test public void testCopyFourier()
+    {
+        double[][] real = new double[][] {{1, 2}, {3, 4}};
+        double[][] imag = new double[][] {{5, 6}, {7, 8}};
+        ReconstructionFieldImpl field = new ReconstructionFieldImpl(real, imag);
+        ReconstructionFieldImpl test = field.copyFourier();
+        assertTrue(!test.hasField(), "The copy should not have a field.");
+        assertTrue(test.hasFourier(), "The copy should have a fourier.");
+        assertTrue(test.fourier() != field.fourier(), "The fourier should be "
+            + "copied.");
+        for (int x = 0; x < 2; ++x) {
+            for (int y = 0; y < 2; ++y) {
+                assertEquals(field.fourier().getReal(x, y),
+                             test.fourier().getReal(x, y));
+                assertEquals(field.fourier().getImag(x, y),
+                             test.fourier().getImag(x, y));
+                assertEquals(real[x][y], test.field().getReal(x, y), 1e-12);
+                assertEquals(imag[x][y], test.field().getImag(x, y), 1e-12);
+            }
+        }
+    }
     // The rest of these are testing the implementation of the fourier transform
     // IMPORTANT: each of these two-dimensional arrays actually are the
     // transpose of the image being transformed.
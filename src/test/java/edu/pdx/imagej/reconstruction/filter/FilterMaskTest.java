@@ -0,0 +1,74 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.filter;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import ij.gui.OvalRoi;
+import ij.gui.Roi;
+
+public class FilterMaskTest {
+    @Test public void testSameAsPoints()
+    {
+        final int width = 20;
+        final int height = 14;
+        Roi roi = new OvalRoi(11, 2, 7, 5);
+        double[][] field = new double[width][height * 2];
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height * 2; ++y) field[x][y] = x * 100 + y + 1;
+        }
+        // This is how filtering was done before it was compiled into spans
+        double[][] expected = new double[width][height * 2];
+        int xp = width / 2 - (int)roi.getBounds().getCenterX();
+        int yp = height / 2 - (int)roi.getBounds().getCenterY();
+        for (Point p : roi) {
+            expected[p.x + xp][(p.y + yp) * 2] = field[p.x][p.y * 2];
+            expected[p.x + xp][(p.y + yp) * 2 + 1] = field[p.x][p.y * 2 + 1];
+        }
+        FilterMask mask = new FilterMask(roi, width, height);
+        mask.apply(field);
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height * 2; ++y) {
+                assertEquals(expected[x][y], field[x][y]);
+            }
+        }
+    }
+    @Test public void testSupport()
+    {
+        FilterMask mask = new FilterMask(new Roi(1, 1, 4, 2), 10, 10);
+        Rectangle support = mask.support();
+        assertEquals(support, new Rectangle(3, 4, 4, 2));
+        assertTrue(mask.fits(10, 10));
+        assertTrue(!mask.fits(10, 12));
+    }
+    @Test public void testOutside()
+    {
+        FilterMask mask = new FilterMask(new Roi(-5, -5, 2, 2), 4, 4);
+        assertTrue(mask.support() == null);
+        double[][] field = {{1, 2, 3, 4, 5, 6, 7, 8}};
+        mask.apply(field);
+        for (double val : field[0]) assertEquals(val, 0);
+    }
+}
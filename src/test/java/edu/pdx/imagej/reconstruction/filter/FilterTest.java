@@ -23,9 +23,13 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
+import java.awt.Rectangle;
+
 import ij.gui.PointRoi;
+import ij.gui.Roi;
 
 import edu.pdx.imagej.reconstruction.ComplexField;
+import edu.pdx.imagej.reconstruction.ConstReconstructionField;
 import edu.pdx.imagej.reconstruction.ReconstructionField;
 import edu.pdx.imagej.reconstruction.ReconstructionFieldImpl;
 
@@ -80,4 +84,35 @@ public class FilterTest {
             }
         }
     }
+    @Test public void testFindSideband()
+    {
+        final int size = 64;
+        double[][] real = new double[size][size];
+        double[][] imag = new double[size][size];
+        for (int x = 0; x < size; ++x) {
+            for (int y = 0; y < size; ++y) {
+                real[x][y] = 2 + Math.cos(2 * Math.PI * (12 * x + 8 * y)
+                                          / size);
+            }
+        }
+        ReconstructionField field = new ReconstructionFieldImpl(real, imag);
+        Roi roi = Filter.findSideband(new ConstReconstructionField(field));
+        Rectangle rect = roi.getBounds();
+        assertEquals((int)rect.getCenterX(), size / 2 + 12);
+        assertEquals((int)rect.getCenterY(), size / 2 + 8);
+        assertTrue(rect.width > 1);
+    }
+    // Without a sideband, finding the filter automatically is an error rather
+    // than quietly not filtering anything
+    @Test public void testNoSideband()
+    {
+        double[][] zeros = new double[8][8];
+        ConstReconstructionField field = new ConstReconstructionField(
+            new ReconstructionFieldImpl(zeros, zeros));
+        assertTrue(Filter.findSideband(field) == null);
+        Filter test = new Filter();
+        test.setAutomatic(true);
+        test.processOriginalHologram(field);
+        assertTrue(test.hasError());
+    }
 }
@@ -141,4 +141,24 @@ public class GrayPhaseTest {
         assertEquals(0, phase[1][0], 0.1);
         assertEquals(0, phase[1][1], 0.1);
     }
+    @Test public void testApproximate()
+    {
+        GrayPhase test = new GrayPhase(true);
+        test.setApproximate(true);
+        double[][] real = {
+            {-1, -2},
+            {-3, -4}
+        };
+        double[][] imag = {
+            { 0.001, -0.001},
+            {-0.001,  0.001},
+        };
+        ReconstructionField field = new ReconstructionFieldImpl(real, imag);
+        test.processPropagatedField(field, 1, null);
+        double[][] phase = field.field().getArg();
+        assertEquals(0, phase[0][0], 0.1);
+        assertEquals(0, phase[0][1], 0.1);
+        assertEquals(0, phase[1][0], 0.1);
+        assertEquals(0, phase[1][1], 0.1);
+    }
 }
@@ -39,6 +39,10 @@ import edu.pdx.imagej.dynamic_parameters.TestDialog;
 import edu.pdx.imagej.reconstruction.ConstReconstructionField;
 import edu.pdx.imagej.reconstruction.ReconstructionField;
 import edu.pdx.imagej.reconstruction.ReconstructionFieldImpl;
+import edu.pdx.imagej.reconstruction.filter.Filter;
+import edu.pdx.imagej.reconstruction.plugin.ReconstructionPlugin;
+import edu.pdx.imagej.reconstruction.reference.AbstractReferencePlugin;
+import edu.pdx.imagej.reconstruction.reference.Reference;
 
 public class PolyTiltTest {
     @Test public void testLinearFit()
@@ -107,6 +111,67 @@ public class PolyTiltTest {
         testCommon(new PolyTilt(new Manual(0, 0, 4, 0, 0, 2), 2));
 
     }
+    // A constant reference hologram folded into the tilt should give the same
+    // result as applying them one after the other
+    @Test public void testFoldReference()
+    {
+        double[][] real = new double[5][3];
+        double[][] imag = new double[5][3];
+        for (int x = 0; x < 5; ++x) {
+            for (int y = 0; y < 3; ++y) {
+                real[x][y] = Math.cos(0.3 * x * x + 0.1 * y) * (1 + x + y);
+                imag[x][y] = Math.sin(0.3 * x * x + 0.1 * y) * (1 + x + y);
+            }
+        }
+        ReconstructionField separate = new ReconstructionFieldImpl(real, imag);
+        ReconstructionField folded = separate.copy();
+        apply(separate, false, real, imag);
+        apply(folded, true, real, imag);
+        for (int x = 0; x < 5; ++x) {
+            for (int y = 0; y < 3; ++y) {
+                String coord = "(" + x + ", " + y + ")";
+                assertEquals(separate.field().getReal(x, y),
+                             folded.field().getReal(x, y), 1e-6, coord);
+                assertEquals(separate.field().getImag(x, y),
+                             folded.field().getImag(x, y), 1e-6, coord);
+            }
+        }
+    }
+    private void apply(ReconstructionField field, boolean constant,
+                       double[][] real, double[][] imag)
+    {
+        double[][] refReal = new double[5][3];
+        double[][] refImag = new double[5][3];
+        for (int x = 0; x < 5; ++x) {
+            for (int y = 0; y < 3; ++y) {
+                refReal[x][y] = Math.cos(0.2 * x - 0.5 * y);
+                refImag[x][y] = Math.sin(0.2 * x - 0.5 * y);
+            }
+        }
+        Reference reference = new Reference(new AbstractReferencePlugin() {
+            @Override
+            public ReconstructionField getReferenceHolo(
+                ConstReconstructionField field, int t)
+            {
+                return new ReconstructionFieldImpl(refReal, refImag);
+            }
+            @Override public boolean isConstant() {return constant;}
+            @Override public AbstractReferencePlugin duplicate()
+                {return null;}
+        }, true, false);
+        PolyTilt test = new PolyTilt(new Manual(0, 0, 4, 0, 0, 2), 2);
+        ArrayList<ReconstructionPlugin> plugins = new ArrayList<>();
+        plugins.add(new Filter());
+        plugins.add(reference);
+        plugins.add(test);
+        reference.readPlugins(plugins);
+        test.readPlugins(plugins);
+        reference.processBeginning();
+        test.processOriginalHologram(new ConstReconstructionField(
+            new ReconstructionFieldImpl(real, imag)));
+        reference.processFilteredField(field, 1);
+        test.processFilteredField(field, 1);
+    }
     private void testCommon(PolyTilt test)
     {
         double[][] phase = {
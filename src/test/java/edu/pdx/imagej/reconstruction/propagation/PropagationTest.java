@@ -27,6 +27,7 @@ import ij.ImagePlus;
 
 import edu.pdx.imagej.reconstruction.ConstReconstructionField;
 import edu.pdx.imagej.reconstruction.ReconstructionField;
+import edu.pdx.imagej.reconstruction.ReconstructionFieldImpl;
 import edu.pdx.imagej.reconstruction.units.DistanceUnits;
 import edu.pdx.imagej.reconstruction.units.DistanceUnitValue;
 
@@ -73,6 +74,24 @@ public class PropagationTest {
         assertTrue(plugin.M_propagated);
     }
 
+    @Test public void testNewField()
+    {
+        TestPlugin plugin = new TestPlugin();
+        Propagation prop = new Propagation(plugin);
+        DistanceUnitValue z = new DistanceUnitValue(1, DistanceUnits.Micro);
+        ReconstructionField field = new ReconstructionFieldImpl(
+            new double[][]{{1, 0}, {0, 0}}, new double[][]{{0, 0}, {0, 0}});
+
+        prop.processPropagatedField(field, 0, z);
+        plugin.M_processed = false;
+        prop.processPropagatedField(field, 0, z);
+        assertTrue(!plugin.M_processed);
+
+        prop.processPropagatedField(field.copy(), 0, z);
+        assertTrue(plugin.M_processed, "A new field at the same time should "
+            + "start over from that field.");
+    }
+
     private static class TestPlugin extends AbstractPropagationPlugin {
         @Override
         public void processHologramParam(ImagePlus hologram)
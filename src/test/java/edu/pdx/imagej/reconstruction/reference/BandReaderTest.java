@@ -0,0 +1,100 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.reference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.io.FileInfo;
+import ij.plugin.FileInfoVirtualStack;
+import ij.process.FloatProcessor;
+
+public class BandReaderTest {
+    @Test public void testFile() throws IOException
+    {
+        final int width = 3;
+        final int height = 4;
+        final int slices = 3;
+        final int offset = 10;
+        final int gap = 6;
+        File file = File.createTempFile("band", ".raw");
+        try {
+            ByteBuffer buf = ByteBuffer.allocate(
+                offset + slices * (width * height * 2 + gap));
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            buf.position(offset);
+            for (int t = 0; t < slices; ++t) {
+                for (int i = 0; i < width * height; ++i) {
+                    buf.putShort((short)(t * 100 + i - 50));
+                }
+                buf.position(buf.position() + gap);
+            }
+            Files.write(file.toPath(), buf.array());
+            FileInfo fi = new FileInfo();
+            fi.fileFormat = FileInfo.RAW;
+            fi.fileType = FileInfo.GRAY16_SIGNED;
+            fi.width = width;
+            fi.height = height;
+            fi.offset = offset;
+            fi.gapBetweenImages = gap;
+            fi.nImages = slices;
+            fi.intelByteOrder = true;
+            fi.directory = file.getParent();
+            fi.fileName = file.getName();
+            ImagePlus imp = new ImagePlus("",
+                                          new FileInfoVirtualStack(fi, false));
+            imp.setFileInfo(fi);
+            try (BandReader test = new BandReader(imp)) {
+                Object band = test.read(2, 1, 3);
+                assertTrue(band instanceof short[]);
+                short[] expected = new short[width * 2];
+                for (int i = 0; i < expected.length; ++i) {
+                    expected[i] = (short)(100 + width + i - 50 + 32768);
+                }
+                assertArrayEquals(expected, (short[])band);
+                // The same as ImageJ reads
+                short[] slice = (short[])imp.getImageStack().getPixels(3);
+                assertArrayEquals(slice, (short[])test.read(3, 0, height));
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+    @Test public void testStack()
+    {
+        ImageStack stack = new ImageStack(2, 3);
+        stack.addSlice(new FloatProcessor(2, 3,
+                                          new float[] {1, 2, 3, 4, 5, 6}));
+        try (BandReader test = new BandReader(new ImagePlus("", stack))) {
+            assertArrayEquals(new float[] {3, 4, 5, 6},
+                              (float[])test.read(1, 1, 3));
+        }
+    }
+}
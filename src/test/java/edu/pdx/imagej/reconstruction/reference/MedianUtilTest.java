@@ -19,15 +19,29 @@
 
 package edu.pdx.imagej.reconstruction.reference;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import ij.ImagePlus;
 import ij.ImageStack;
+import ij.io.FileInfo;
+import ij.plugin.FileInfoVirtualStack;
+import ij.process.ByteProcessor;
 import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
 
 public class MedianUtilTest {
     @Test public void testOdd()
@@ -86,4 +100,112 @@ public class MedianUtilTest {
 
         assertEquals(result, 2.5);
     }
+    @Test public void testNotSquare()
+    {
+        ImageStack stack = new ImageStack(3, 1);
+        stack.addSlice(new FloatProcessor(new float[][] {{0}, {1}, {2}}));
+        stack.addSlice(new FloatProcessor(new float[][] {{4}, {3}, {6}}));
+        stack.addSlice(new FloatProcessor(new float[][] {{2}, {9}, {4}}));
+        ImagePlus imp = new ImagePlus("", stack);
+        List<Integer> times = Arrays.asList(1, 2, 3);
+        double[][] result = MedianUtil.calculateMedian(imp, times);
+        assertEquals(2, result[0][0]);
+        assertEquals(3, result[1][0]);
+        assertEquals(4, result[2][0]);
+    }
+    @Test public void testSameAsSorting()
+    {
+        // Enough pixels for more than one tile
+        final int width = 130;
+        final int height = 70;
+        for (int type = 0; type < 3; ++type) {
+            for (int size : new int[] {7, 8}) {
+                Random random = new Random(type * 10 + size);
+                ImageStack stack = new ImageStack(width, height);
+                for (int t = 0; t < size; ++t) {
+                    ImageProcessor proc;
+                    if (type == 0) proc = new ByteProcessor(width, height);
+                    else if (type == 1) {
+                        proc = new ShortProcessor(width, height);
+                    }
+                    else proc = new FloatProcessor(width, height);
+                    for (int i = 0; i < width * height; ++i) {
+                        if (type == 2) {
+                            // Ties, and both signs
+                            proc.setf(i, random.nextInt(20) - 10
+                                         + (random.nextBoolean() ? 0.5f : 0));
+                        }
+                        else {
+                            proc.set(i, random.nextInt(type == 0 ? 256
+                                                                 : 65536));
+                        }
+                    }
+                    stack.addSlice(proc);
+                }
+                ImagePlus imp = new ImagePlus("", stack);
+                List<Integer> times = new ArrayList<>();
+                for (int t = 1; t <= size; ++t) times.add(t);
+                double[][] result = MedianUtil.calculateMedian(imp, times);
+                for (int x = 0; x < width; ++x) {
+                    for (int y = 0; y < height; ++y) {
+                        double[] values = new double[size];
+                        for (int t = 0; t < size; ++t) {
+                            values[t] = stack.getProcessor(t + 1).getf(x, y);
+                        }
+                        Arrays.sort(values);
+                        int middle = size / 2;
+                        double expected = size % 2 == 0
+                            ? (values[middle - 1] + values[middle]) / 2.0
+                            : values[middle];
+                        assertEquals(expected, result[x][y]);
+                    }
+                }
+            }
+        }
+    }
+    @Test public void testVirtualBands() throws IOException
+    {
+        final int width = 5;
+        final int height = 7;
+        final int size = 6;
+        Random random = new Random(7);
+        ImageStack stack = new ImageStack(width, height);
+        ByteBuffer buf = ByteBuffer.allocate(width * height * size * 4);
+        for (int t = 0; t < size; ++t) {
+            float[] pixels = new float[width * height];
+            for (int i = 0; i < pixels.length; ++i) {
+                pixels[i] = (float)random.nextGaussian();
+                buf.putFloat(pixels[i]);
+            }
+            stack.addSlice(new FloatProcessor(width, height, pixels));
+        }
+        File file = File.createTempFile("median", ".raw");
+        try {
+            Files.write(file.toPath(), buf.array());
+            FileInfo fi = new FileInfo();
+            fi.fileFormat = FileInfo.RAW;
+            fi.fileType = FileInfo.GRAY32_FLOAT;
+            fi.width = width;
+            fi.height = height;
+            fi.nImages = size;
+            fi.directory = file.getParent();
+            fi.fileName = file.getName();
+            ImagePlus virtual = new ImagePlus("",
+                new FileInfoVirtualStack(fi, false));
+            virtual.setFileInfo(fi);
+            List<Integer> times = Arrays.asList(1, 2, 4, 5, 6);
+            double[][] expected
+                = MedianUtil.calculateMedian(new ImagePlus("", stack), times);
+            // Bands of two rows, so the last band is shorter
+            double[][] result = MedianUtil.calculateMedian(virtual, times,
+                                                           times.size() * 2
+                                                           * width);
+            for (int x = 0; x < width; ++x) {
+                assertArrayEquals(expected[x], result[x]);
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
 }
@@ -20,6 +20,7 @@
 package edu.pdx.imagej.reconstruction.reference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
@@ -90,4 +91,18 @@ public class OffsetTest {
         assertEquals(field.field().getReal(1, 0), 7);
         assertEquals(field.field().getReal(1, 1), 8);
     }
+    @Test public void testReferenceKey()
+    {
+        ImageStack stack = new ImageStack(2, 2);
+        stack.addSlice("", new FloatProcessor(new float[][] {{1, 2}, {3, 4}}));
+        stack.addSlice("", new FloatProcessor(new float[][] {{5, 6}, {7, 8}}));
+        stack.addSlice("", new FloatProcessor(new float[][] {{9, 0}, {1, 2}}));
+        ImagePlus imp = new ImagePlus("", stack);
+        Offset test = new Offset(imp, -1);
+
+        assertEquals(test.referenceKey(1), test.referenceKey(2));
+        assertNotEquals(test.referenceKey(2), test.referenceKey(3));
+        assertNotEquals(test.referenceKey(1),
+                        new Offset(imp.duplicate(), -1).referenceKey(1));
+    }
 }
@@ -186,6 +186,91 @@ public class ReferenceTest {
             }
         }
     }
+    // Time slices with the same key should share one reference hologram, and
+    // only the most recently used should be kept.
+    @Test public void testCache()
+    {
+        Filter filter = new Filter();
+        filter.setFilter(new PointRoi(new int[]{1, 1, 2, 2},
+                                       new int[]{1, 2, 1, 2}, 4));
+        CountingPlugin plugin = new CountingPlugin();
+        Reference test = new Reference(plugin, true, false);
+        ArrayList<ReconstructionPlugin> plugins = new ArrayList<>();
+        plugins.add(filter);
+        test.readPlugins(plugins);
+        ReconstructionField field = new ReconstructionFieldImpl(real, imag);
+        ReconstructionField field1 = field.copy();
+        ReconstructionField field2 = field.copy();
+
+        test.processFilteredField(field1, 0);
+        test.processFilteredField(field2, 1);
+        assertEquals(1, plugin.M_count);
+        double[][] f1 = field1.field().getField();
+        double[][] f2 = field2.field().getField();
+        for (int x = 0; x < 3; ++x) {
+            for (int y = 0; y < 6; ++y) {
+                assertEquals(f1[x][y], f2[x][y], "(" + x + ", " + y + ")");
+            }
+        }
+
+        for (int t = 2; t < 10; t += 2) {
+            test.processFilteredField(field.copy(), t);
+        }
+        assertEquals(5, plugin.M_count);
+        test.processFilteredField(field.copy(), 9);
+        assertEquals(5, plugin.M_count);
+        test.processFilteredField(field.copy(), 0);
+        assertEquals(6, plugin.M_count);
+    }
+    // When the main filter is automatic, the reference's own filter should be
+    // too, instead of asking the user for it.
+    @Test public void testAutomaticOwnFilter()
+    {
+        final int size = 64;
+        double[][] holoReal = new double[size][size];
+        double[][] holoImag = new double[size][size];
+        for (int x = 0; x < size; ++x) {
+            for (int y = 0; y < size; ++y) {
+                holoReal[x][y] = 2 + Math.cos(2 * Math.PI * (12 * x + 8 * y)
+                                              / size);
+            }
+        }
+        Filter filter = new Filter();
+        filter.setAutomatic(true);
+        Reference test = new Reference(new Self(), true, false);
+        ArrayList<ReconstructionPlugin> plugins = new ArrayList<>();
+        plugins.add(filter);
+        test.readPlugins(plugins);
+        ReconstructionField field
+            = new ReconstructionFieldImpl(holoReal, holoImag);
+        filter.processOriginalHologram(new ConstReconstructionField(field));
+        test.processHologram(field, 1);
+        filter.filterField(field);
+
+        test.processFilteredField(field, 1);
+        assertTrue(!test.hasError());
+        assertTrue(test.M_notSameFilter.getAutomatic());
+        assertTrue(test.M_notSameFilter.getSupport(size, size) != null);
+    }
+    // A new reconstruction must not fold in the last one's reference
+    @Test public void testFoldNewRun()
+    {
+        Filter filter = new Filter();
+        filter.setFilter(new PointRoi(new int[]{1, 1, 2, 2},
+                                       new int[]{1, 2, 1, 2}, 4));
+        Reference test = new Reference(new TestPlugin() {
+            @Override public boolean isConstant() {return true;}
+        }, true, false);
+        ArrayList<ReconstructionPlugin> plugins = new ArrayList<>();
+        plugins.add(filter);
+        test.readPlugins(plugins);
+        test.processBeginning();
+        assertTrue(test.foldConstantReference() == null);
+        test.processFilteredField(new ReconstructionFieldImpl(real, imag), 1);
+        assertTrue(test.foldConstantReference() != null);
+        test.processBeginning();
+        assertTrue(test.foldConstantReference() == null);
+    }
     public static class TestPlugin extends AbstractReferencePlugin {
         @Override
         public ReconstructionField getReferenceHolo(
@@ -232,6 +317,20 @@ public class ReferenceTest {
             return new ReconstructionFieldImpl(real, imag);
         }
     }
+    // Gives time slices 2n and 2n + 1 the same key
+    public static class CountingPlugin extends AbstractReferencePlugin {
+        @Override
+        public ReconstructionField getReferenceHolo(
+            ConstReconstructionField field, int t)
+        {
+            ++M_count;
+            return new ReconstructionFieldImpl(real, imag);
+        }
+        @Override public Object referenceKey(int t) {return t / 2;}
+        @Override public CountingPlugin duplicate()
+            {return new CountingPlugin();}
+        int M_count = 0;
+    }
     private static double[][] real = {
         {0.5542820629, 0.1879272540, 0.8584170661},
         {0.7808111477, 0.6247602260, 0.6811765293},
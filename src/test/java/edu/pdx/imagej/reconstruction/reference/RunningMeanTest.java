@@ -0,0 +1,93 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.reference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import edu.pdx.imagej.reconstruction.ReconstructionField;
+import edu.pdx.imagej.reconstruction.ReconstructionFieldImpl;
+
+public class RunningMeanTest {
+    @Test public void testWindow()
+    {
+        RunningMean test = new RunningMean(2, false);
+        assertTrue(test.getReferenceHolo(null, 1) == null);
+        add(test, 1, 1);
+        assertEquals(1, mean(test));
+        add(test, 3, 2);
+        assertEquals(2, mean(test));
+        add(test, 9, 3);
+        assertEquals(6, mean(test));
+        add(test, 5, 4);
+        assertEquals(7, mean(test));
+    }
+    @Test public void testExponential()
+    {
+        // Each new hologram is weighted by one half
+        RunningMean test = new RunningMean(3, true);
+        add(test, 4, 1);
+        assertEquals(4, mean(test));
+        add(test, 8, 2);
+        assertEquals(6, mean(test));
+        add(test, 2, 3);
+        assertEquals(4, mean(test));
+    }
+    @Test public void testDuplicate()
+    {
+        RunningMean test = new RunningMean(2, false);
+        add(test, 4, 1);
+        RunningMean copy = test.duplicate();
+        assertTrue(copy.getReferenceHolo(null, 1) == null);
+        add(copy, 2, 1);
+        add(copy, 6, 1);
+        assertEquals(4, mean(copy));
+    }
+    // A second reconstruction starts a new mean, even with a different size
+    @Test public void testNewRun()
+    {
+        RunningMean test = new RunningMean(2, false);
+        add(test, 4, 1);
+        add(test, 8, 2);
+        test.processBeginning();
+        assertTrue(test.getReferenceHolo(null, 1) == null);
+        double[][] real = {{2, 2, 2}, {2, 2, 2}, {2, 2, 2}};
+        test.processHologram(new ReconstructionFieldImpl(real,
+                                                         new double[3][3]), 1);
+        ReconstructionField field = test.getReferenceHolo(null, 1);
+        assertEquals(3, field.field().width());
+        assertEquals(2, field.field().getReal(2, 2));
+    }
+
+    private static void add(RunningMean test, double value, int t)
+    {
+        double[][] real = {{value, value}, {value, value}};
+        double[][] imag = {{0, 0}, {0, 0}};
+        test.processHologram(new ReconstructionFieldImpl(real, imag), t);
+    }
+    private static double mean(RunningMean test)
+    {
+        ReconstructionField field = test.getReferenceHolo(null, 1);
+        assertEquals(field.field().getReal(0, 0), field.field().getReal(1, 1));
+        assertEquals(0, field.field().getImag(0, 1));
+        return field.field().getReal(0, 0);
+    }
+}
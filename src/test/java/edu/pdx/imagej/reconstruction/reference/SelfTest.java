@@ -23,6 +23,10 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
+import edu.pdx.imagej.reconstruction.ConstReconstructionField;
+import edu.pdx.imagej.reconstruction.ReconstructionField;
+import edu.pdx.imagej.reconstruction.ReconstructionFieldImpl;
+
 public class SelfTest {
     @Test public void testDont()
     {
@@ -30,4 +34,28 @@ public class SelfTest {
         // You laugh, but this was a bug
         assertTrue(test.dontUseSameRoi());
     }
+    // The reference should come from the hologram before it was filtered
+    @Test public void testHologram()
+    {
+        double[][] real = new double[][] {{1, 2}, {3, 4}};
+        double[][] imag = new double[][] {{0, 0}, {0, 0}};
+        ReconstructionField field = new ReconstructionFieldImpl(real, imag);
+        Self test = new Self();
+        test.processHologram(field, 1);
+        field.fourier().multiplyInPlace(0); // Stands in for the filter
+
+        ReconstructionField reference
+            = test.getReferenceHolo(new ConstReconstructionField(field), 1);
+        assertTrue(!reference.hasField());
+        for (int x = 0; x < 2; ++x) {
+            for (int y = 0; y < 2; ++y) {
+                assertEquals(real[x][y], reference.field().getReal(x, y),
+                             1e-12);
+            }
+        }
+        // Without the hologram for this time slice, it copies the field
+        reference
+            = test.getReferenceHolo(new ConstReconstructionField(field), 2);
+        assertEquals(0, reference.field().getReal(0, 0), 1e-12);
+    }
 }
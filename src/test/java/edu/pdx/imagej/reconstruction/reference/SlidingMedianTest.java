@@ -0,0 +1,87 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.reference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.process.FloatProcessor;
+
+public class SlidingMedianTest {
+    @Test public void testSameAsSorting()
+    {
+        check(Long.MAX_VALUE);
+    }
+    // Windows of five slices don't fit, so those are left to MedianUtil
+    @Test public void testTooLarge()
+    {
+        check(4 * 3 * 4);
+    }
+
+    private static void check(long maxValues)
+    {
+        final int width = 4;
+        final int height = 3;
+        Random random = new Random(5);
+        ImageStack stack = new ImageStack(width, height);
+        for (int t = 0; t < 20; ++t) {
+            float[] pixels = new float[width * height];
+            // Few enough values that there are plenty of ties
+            for (int i = 0; i < pixels.length; ++i) {
+                pixels[i] = random.nextInt(6) - 2;
+            }
+            stack.addSlice(new FloatProcessor(width, height, pixels));
+        }
+        ImagePlus imp = new ImagePlus("", stack);
+        SlidingMedian test = new SlidingMedian(imp, maxValues);
+        // Windows that slide by one, jump, skip slices, and change size
+        int[][] windows = {
+            {1, 2, 3, 4, 5}, {2, 3, 4, 5, 6}, {3, 4, 5, 6, 7},
+            {10, 11, 12, 13, 14}, {1, 3, 5, 7}, {2, 4, 6, 8}, {3, 5, 7, 9},
+            {4, 6, 8, 10}, {16, 17, 18, 19, 20}, {17, 18, 19, 20}
+        };
+        for (int[] window : windows) {
+            List<Integer> times = new ArrayList<>();
+            for (int t : window) times.add(t);
+            double[][] result = test.median(times);
+            for (int x = 0; x < width; ++x) {
+                for (int y = 0; y < height; ++y) {
+                    double[] values = new double[window.length];
+                    for (int i = 0; i < window.length; ++i) {
+                        values[i] = stack.getProcessor(window[i]).getf(x, y);
+                    }
+                    Arrays.sort(values);
+                    int middle = values.length / 2;
+                    double expected = values.length % 2 == 0
+                        ? (values[middle - 1] + values[middle]) / 2.0
+                        : values[middle];
+                    assertEquals(expected, result[x][y]);
+                }
+            }
+        }
+    }
+}
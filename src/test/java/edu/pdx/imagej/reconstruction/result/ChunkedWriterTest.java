@@ -0,0 +1,159 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+
+import ij.measure.Calibration;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class ChunkedWriterTest {
+    @Test public void testCompressed() throws Exception
+    {
+        String dir = "./reconstructionChunkedSandbox";
+        try {
+            Path path = Paths.get(dir, "Amplitude");
+            WriterPool pool = new WriterPool(2, 4);
+            // Wide enough for two chunks, and deep enough for two z blocks
+            final int width = ChunkedWriter.SC_chunkSize + 10;
+            final int zSize = ChunkedWriter.SC_chunkDepth + 1;
+            ChunkedWriter test = new ChunkedWriter(path, width, 3, 32, true,
+                new int[]{1, 2}, new double[zSize], new Calibration(), pool);
+            for (int z = zSize - 1; z >= 0; --z) {
+                for (int t = 0; t < 2; ++t) {
+                    test.addSlice(t, z, slice(width, t, z));
+                }
+            }
+            pool.finish();
+            assertTrue(new File(Paths.get(dir, "attributes.json").toString())
+                .exists());
+
+            ChunkedReader reader = new ChunkedReader(path);
+            assertEquals(width, reader.width());
+            assertEquals(3, reader.height());
+            assertEquals(zSize, reader.zSize());
+            assertEquals(2, reader.tSize());
+            assertEquals(32, reader.bitDepth());
+            // Straddling both chunks
+            int x = ChunkedWriter.SC_chunkSize - 2;
+            ImageProcessor proc = reader.read(1, zSize - 1, x, 1, 4, 2);
+            assertEquals(4, proc.getWidth());
+            for (int j = 0; j < 2; ++j) {
+                for (int i = 0; i < 4; ++i) {
+                    assertEquals(value(1, zSize - 1, x + i, j + 1),
+                                 proc.getf(i, j));
+                }
+            }
+            proc = reader.read(0, 2, 0, 0, width, 3);
+            assertEquals(value(0, 2, width - 1, 2), proc.getf(width - 1, 2));
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+    @Test public void testShort() throws Exception
+    {
+        String dir = "./reconstructionChunkedSandbox";
+        try {
+            Path path = Paths.get(dir, "Phase");
+            WriterPool pool = new WriterPool(1, 1);
+            ChunkedWriter test = new ChunkedWriter(path, 2, 2, 16, false,
+                new int[]{1}, new double[]{0}, new Calibration(), pool);
+            test.addSlice(0, 0, new ShortProcessor(2, 2,
+                new short[]{1, 2, 3, (short)60000}, null));
+            pool.finish();
+
+            ChunkedReader reader = new ChunkedReader(path);
+            assertEquals(16, reader.bitDepth());
+            ImageProcessor proc = reader.read(0, 0, 1, 0, 1, 2);
+            assertEquals(2, proc.get(0, 0));
+            assertEquals(60000, proc.get(0, 1));
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+    @Test public void testEscapedUnit() throws Exception
+    {
+        String dir = "./reconstructionChunkedSandbox";
+        try {
+            Path path = Paths.get(dir, "Real");
+            Calibration cal = new Calibration();
+            cal.setUnit("a \"b\" \\c\n");
+            WriterPool pool = new WriterPool(1, 1);
+            new ChunkedWriter(path, 2, 2, 32, false, new int[]{1},
+                new double[]{0}, cal, pool);
+            pool.finish();
+            String json = new String(Files.readAllBytes(
+                path.resolve("attributes.json")), StandardCharsets.UTF_8);
+            assertTrue(json.contains(
+                "\"units\":[\"a \\\"b\\\" \\\\c\\u000a\","), json);
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+    @Test public void testNotFinite() throws Exception
+    {
+        String dir = "./reconstructionChunkedSandbox";
+        try {
+            Path path = Paths.get(dir, "Imaginary");
+            WriterPool pool = new WriterPool(1, 1);
+            assertThrows(IOException.class, () -> new ChunkedWriter(path, 2,
+                2, 32, false, new int[]{1}, new double[]{Double.NaN},
+                new Calibration(), pool));
+            pool.finish();
+            assertFalse(new File(path.toString()).exists());
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+
+    private static float value(int t, int z, int x, int y)
+    {
+        return 1000 * t + 100 * z + x + 0.5f * y;
+    }
+    private static ImageProcessor slice(int width, int t, int z)
+    {
+        float[] pixels = new float[width * 3];
+        for (int y = 0; y < 3; ++y) {
+            for (int x = 0; x < width; ++x) {
+                pixels[y * width + x] = value(t, z, x, y);
+            }
+        }
+        return new FloatProcessor(width, 3, pixels);
+    }
+}
@@ -0,0 +1,146 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.util.Random;
+
+import ij.process.FloatProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import edu.pdx.imagej.reconstruction.ComplexField;
+import edu.pdx.imagej.reconstruction.FastMath;
+import edu.pdx.imagej.reconstruction.ReconstructionFieldImpl;
+
+public class ExtractUtilTest {
+    @Test public void testSameAsSeparate()
+    {
+        // Wider than one block, to check the edges of the blocks
+        final int width = 70;
+        final int height = 5;
+        double[][] real = new double[width][height];
+        double[][] imag = new double[width][height];
+        Random random = new Random(1);
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height; ++y) {
+                real[x][y] = random.nextGaussian();
+                imag[x][y] = random.nextGaussian();
+            }
+        }
+        ComplexField field = new ReconstructionFieldImpl(real, imag).field();
+        float[] amplitude = new float[width * height];
+        float[] phase = new float[width * height];
+        float[] realPixels = new float[width * height];
+        ExtractUtil.extract(field.getField(), amplitude, phase, realPixels,
+                            null, false);
+        double[][] expectedAmp = field.getAmp();
+        double[][] expectedArg = field.getArg();
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height; ++y) {
+                assertEquals((float)expectedAmp[x][y], amplitude[y*width + x]);
+                assertEquals((float)expectedArg[x][y], phase[y*width + x]);
+                assertEquals((float)real[x][y], realPixels[y*width + x]);
+            }
+        }
+    }
+    @Test public void testApproximatePhase()
+    {
+        final int width = 70;
+        final int height = 5;
+        double[][] real = new double[width][height];
+        double[][] imag = new double[width][height];
+        Random random = new Random(4);
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height; ++y) {
+                real[x][y] = random.nextGaussian();
+                imag[x][y] = random.nextGaussian();
+            }
+        }
+        ComplexField field = new ReconstructionFieldImpl(real, imag).field();
+        float[] phase = new float[width * height];
+        ExtractUtil.extract(field.getField(), null, phase, null, null, true);
+        double[][] expected = field.getArg();
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height; ++y) {
+                assertEquals(expected[x][y], phase[y*width + x],
+                             FastMath.SC_atan2Error + 1e-6);
+            }
+        }
+    }
+    @Test public void testReduce()
+    {
+        double[][] field = {
+            {1, 0, 2, 0, 3, 0},
+            {4, 1, 5, 1, 6, 1},
+            {7, 2, 8, 2, 9, 2}
+        };
+        double[][] result = ExtractUtil.reduce(field, 1, 1, 2, 2, 1);
+        assertArrayEquals(new double[]{5, 1, 6, 1}, result[0]);
+        assertArrayEquals(new double[]{8, 2, 9, 2}, result[1]);
+        result = ExtractUtil.reduce(field, 0, 0, 1, 1, 2);
+        assertArrayEquals(new double[]{3, 0.5}, result[0]);
+    }
+    @Test public void testQuantizeSameAsImageJ()
+    {
+        final int width = 70;
+        final int height = 5;
+        double[][] real = new double[width][height];
+        double[][] imag = new double[width][height];
+        Random random = new Random(2);
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height; ++y) {
+                real[x][y] = random.nextGaussian();
+                imag[x][y] = random.nextGaussian();
+            }
+        }
+        ComplexField field = new ReconstructionFieldImpl(real, imag).field();
+        final int size = width * height;
+        float[] amplitude = new float[size];
+        float[] phase = new float[size];
+        float[] realPixels = new float[size];
+        ExtractUtil.extract(field.getField(), amplitude, phase, realPixels,
+                            null, false);
+        // Ranges that clip some of the values
+        double[] min = {0.5, -Math.PI, -1, 0};
+        double[] max = {2, Math.PI, 1, 0};
+        float[][] floats = {amplitude, phase, realPixels};
+
+        Object[] bytes = {new byte[size], new byte[size], new byte[size],
+                          null};
+        ExtractUtil.quantize(field.getField(), bytes, min, max, false);
+        Object[] shorts = {new short[size], new short[size], new short[size],
+                           null};
+        ExtractUtil.quantize(field.getField(), shorts, min, max, false);
+        for (int k = 0; k < 3; ++k) {
+            FloatProcessor proc = new FloatProcessor(width, height, floats[k]);
+            proc.setMinAndMax(min[k], max[k]);
+            byte[] expectedBytes
+                = (byte[])proc.convertToByteProcessor().getPixels();
+            short[] expectedShorts
+                = (short[])proc.convertToShortProcessor().getPixels();
+            for (int i = 0; i < size; ++i) {
+                assertEquals(expectedBytes[i], ((byte[])bytes[k])[i]);
+                assertEquals(expectedShorts[i], ((short[])shorts[k])[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import ij.ImagePlus;
+import ij.process.FloatProcessor;
+import ij.process.ShortProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class MappedStackTest {
+    @Test public void testFloat() throws java.io.IOException
+    {
+        MappedStack test = new MappedStack(2, 3, 32, 2);
+        test.addSlice("a", new FloatProcessor(2, 3,
+            new float[]{1, 2, 3, 4, 5, 6}));
+        test.addSlice("b", new FloatProcessor(2, 3,
+            new float[]{7, 8, 9, 10, 11, 12}));
+        assertTrue(test.isVirtual());
+        assertEquals(2, test.getSize());
+        assertEquals("b", test.getSliceLabel(2));
+        assertEquals(4, test.getProcessor(1).getf(1, 1));
+        assertEquals(12, test.getProcessor(2).getf(1, 2));
+        assertThrows(IllegalStateException.class, () ->
+            test.addSlice("c", new FloatProcessor(2, 3)));
+        test.deleteSlice(1);
+        assertEquals(2, test.getSize());
+        assertEquals("a", test.getSliceLabel(1));
+
+        ImagePlus imp = new ImagePlus("", test);
+        imp.setDimensions(1, 1, 2);
+        imp.setT(2);
+        assertEquals(11, imp.getProcessor().getf(0, 2));
+    }
+    @Test public void testShort() throws java.io.IOException
+    {
+        MappedStack test = new MappedStack(2, 1, 16, 1);
+        test.addSlice("a", new ShortProcessor(2, 1, new short[]{300, -1},
+                                              null));
+        assertEquals(16, test.getBitDepth());
+        assertEquals(300, test.getProcessor(1).get(0, 0));
+        assertEquals(65535, test.getProcessor(1).get(1, 0));
+    }
+}
@@ -0,0 +1,118 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class RawComplexWriterTest {
+    @Test public void testOutOfOrder() throws Exception
+    {
+        String dir = "./reconstructionRawSandbox";
+        try {
+            new File(dir).mkdirs();
+            Path path = Paths.get(dir, "a.raw");
+            RawComplexWriter test = new RawComplexWriter(path, 3, 2, false,
+                new int[]{1, 3}, new double[]{0.5, 1.5}, 1);
+            // Written backwards, so every plane but the last is written
+            // after the one after it
+            for (int i = 3; i >= 0; --i) {
+                test.write(i, test.encode(field(i)));
+            }
+            test.close();
+
+            try (RawComplexReader reader = new RawComplexReader(path)) {
+                assertEquals(3, reader.width());
+                assertEquals(2, reader.height());
+                assertFalse(reader.isDouble());
+                assertArrayEquals(new int[]{1, 3}, reader.ts());
+                assertArrayEquals(new double[]{0.5, 1.5}, reader.zs());
+                for (int t = 0; t < 2; ++t) {
+                    for (int z = 0; z < 2; ++z) {
+                        double[][] expected = field(t * 2 + z);
+                        double[][] actual = reader.field(t, z);
+                        for (int x = 0; x < 3; ++x) {
+                            assertArrayEquals(expected[x], actual[x]);
+                        }
+                    }
+                }
+                // Row-major and interleaved
+                FloatBuffer plane = reader.plane(1, 0).asFloatBuffer();
+                assertEquals(3 * 2 * 2, plane.remaining());
+                assertEquals(2 * 100 + 1 * 10 + 0, plane.get(2));
+                assertEquals(-(2 * 100 + 0 * 10 + 1), plane.get(7));
+            }
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+    @Test public void testDouble() throws Exception
+    {
+        String dir = "./reconstructionRawSandbox";
+        try {
+            new File(dir).mkdirs();
+            Path path = Paths.get(dir, "a.raw");
+            RawComplexWriter test = new RawComplexWriter(path, 2, 2, true,
+                new int[]{1}, new double[]{0}, 2);
+            double[][] field = {{0.1, 0.2, 0.3, 0.4}, {0.5, 0.6, 0.7, 0.8}};
+            ByteBuffer buf = test.encode(field);
+            // The field can be changed as soon as it's encoded
+            field[0][0] = 5;
+            test.write(0, buf);
+            test.close();
+
+            try (RawComplexReader reader = new RawComplexReader(path)) {
+                assertTrue(reader.isDouble());
+                double[][] actual = reader.field(0, 0);
+                assertEquals(0.1, actual[0][0]);
+                assertEquals(0.8, actual[1][3]);
+            }
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+
+    // Real part is 100 * index + 10 * x + y, and the imaginary part is its
+    // negative
+    private static double[][] field(int index)
+    {
+        double[][] result = new double[3][4];
+        for (int x = 0; x < 3; ++x) {
+            for (int y = 0; y < 2; ++y) {
+                result[x][2 * y] = 100 * index + 10 * x + y;
+                result[x][2 * y + 1] = -(100 * index + 10 * x + y);
+            }
+        }
+        return result;
+    }
+}
@@ -30,6 +30,9 @@ import ij.ImagePlus;
 import ij.ImageStack;
 import ij.process.FloatProcessor;
 
+import org.scijava.Context;
+import org.scijava.ui.UIService;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
@@ -88,6 +91,96 @@ public class ResultTest {
         assertEquals(test.M_realImp.getStack().getSliceLabel(1),
                      "A, z = 0.000");
     }
+    @Test public void testScaling()
+    {
+        for (ResultOptions.Scaling scaling : new ResultOptions.Scaling[]{
+                ResultOptions.Scaling.First, ResultOptions.Scaling.Fixed}) {
+            Result test = new Result();
+            ImagePlus imp = createTheStack();
+            test.M_options = new ResultOptions();
+            test.M_options.real = true;
+            test.M_options.type = ResultOptions.Type.Type8Bit;
+            test.M_options.scaling = scaling;
+            test.M_options.realMin = 0;
+            test.M_options.realMax = 4;
+            ArrayList<Integer> ts = new ArrayList<>();
+            ts.add(1);
+            ArrayList<DistanceUnitValue> zs = new ArrayList<>();
+            zs.add(unit0); zs.add(unit1);
+
+            test.processHologramParam(imp);
+            test.processDimensionsParam(unit2, unit3);
+            test.processTsParam(ts);
+            test.processZsParam(zs);
+            test.processBeginning();
+            double[][] real = {{0, 1}, {2, 4}};
+            double[][] imag = {{0, 0}, {0, 0}};
+            ReconstructionField field = new ReconstructionFieldImpl(real, imag);
+            test.processPropagatedField(field, 1, unit0);
+            // Half the values, which would be scaled the same as before if
+            // each slice had its own range
+            field.field().getField()[0][2] = 0.5;
+            field.field().getField()[1][0] = 1;
+            field.field().getField()[1][2] = 2;
+            test.processPropagatedField(field, 1, unit1);
+            test.almostProcessEnding();
+
+            ImageStack stack = test.M_realImp.getStack();
+            assertEquals(8, stack.getBitDepth());
+            assertEquals(255, stack.getProcessor(1).get(1, 1));
+            assertEquals(128, stack.getProcessor(2).get(1, 1));
+            assertEquals(64, stack.getProcessor(2).get(1, 0));
+        }
+    }
+    @Test public void testCropAndBinning()
+    {
+        Result test = new Result();
+        ImagePlus imp = new ImagePlus("A", new FloatProcessor(4, 4));
+        test.M_options = new ResultOptions();
+        test.M_options.real = true;
+        test.M_options.imaginary = true;
+        test.M_options.crop = new java.awt.Rectangle(1, 0, 2, 5);
+        test.M_options.binning = 2;
+        ArrayList<Integer> ts = new ArrayList<>();
+        ts.add(1);
+        ArrayList<DistanceUnitValue> zs = new ArrayList<>();
+        zs.add(unit0);
+
+        test.processHologramParam(imp);
+        test.processDimensionsParam(unit2, unit3);
+        test.processTsParam(ts);
+        test.processZsParam(zs);
+        test.processBeginning();
+        double[][] real = {
+            {9, 9, 9, 9},
+            {1, 2, 5, 6},
+            {3, 4, 7, 8},
+            {9, 9, 9, 9}
+        };
+        double[][] imag = {
+            {9, 9, 9, 9},
+            {0, 0, 1, 1},
+            {0, 4, 1, 1},
+            {9, 9, 9, 9}
+        };
+        ReconstructionField field = new ReconstructionFieldImpl(real, imag);
+        test.processPropagatedField(field, 1, unit0);
+        test.almostProcessEnding();
+
+        float[][] real2 = test.M_realImp.getProcessor().getFloatArray();
+        float[][] imag2 = test.M_imaginaryImp.getProcessor().getFloatArray();
+        assertEquals(1, real2.length);
+        assertEquals(2, real2[0].length);
+        assertEquals(2.5, real2[0][0]);
+        assertEquals(6.5, real2[0][1]);
+        assertEquals(1, imag2[0][0]);
+        assertEquals(1, imag2[0][1]);
+        ij.measure.Calibration cal = test.M_realImp.getCalibration();
+        assertEquals(1, cal.pixelWidth);
+        assertEquals(1.5, cal.pixelHeight);
+        assertEquals(-0.5, cal.xOrigin);
+        assertTrue(cal.yOrigin == 0);
+    }
     @Test public void testStack()
     {
         Result test = new Result();
@@ -141,6 +234,145 @@ public class ResultTest {
         assertEquals(real30_label, "A, z = 0.000");
         assertEquals(real31_label, "A, z = 1.000");
     }
+    @Test public void testProjection()
+    {
+        Result test = new Result();
+        ImagePlus stack = createTheStack();
+        test.M_options = new ResultOptions();
+        test.M_options.projection = true;
+        ArrayList<Integer> ts = new ArrayList<>();
+        ts.add(1); ts.add(3);
+        ArrayList<DistanceUnitValue> zs = new ArrayList<>();
+        zs.add(unit0); zs.add(unit1);
+
+        test.processHologramParam(stack);
+        test.processDimensionsParam(unit2, unit3);
+        test.processTsParam(ts);
+        test.processZsParam(zs);
+        test.processBeginning();
+
+        double[][] real = {{1, 0}, {0, 0}};
+        double[][] imag = {{0, 0}, {0, 0}};
+        ReconstructionField field = new ReconstructionFieldImpl(real, imag);
+        test.processPropagatedField(field, 1, unit0);
+        field.field().getField()[0][0] = 3;
+        field.field().getField()[0][1] = 4;
+        test.processPropagatedField(field, 1, unit1);
+        field.field().getField()[0][0] = 2;
+        field.field().getField()[0][1] = 0;
+        test.processPropagatedField(field, 3, unit0);
+        field.field().getField()[0][0] = -1;
+        test.processPropagatedField(field, 3, unit1);
+        test.almostProcessEnding();
+
+        ImageStack max = test.M_maxImp.getStack();
+        ImageStack depth = test.M_depthImp.getStack();
+        ImageStack sum = test.M_sumImp.getStack();
+        assertEquals(max.getSize(), 2);
+        assertEquals(test.M_maxImp.getNFrames(), 2);
+        assertEquals(max.getProcessor(1).getf(0, 0), 5);
+        assertEquals(depth.getProcessor(1).getf(0, 0), 1);
+        assertEquals(sum.getProcessor(1).getf(0, 0), 6);
+        assertEquals(max.getProcessor(2).getf(0, 0), 2);
+        assertEquals(depth.getProcessor(2).getf(0, 0), 0);
+        assertEquals(sum.getProcessor(2).getf(0, 0), 3);
+        assertEquals(max.getSliceLabel(2), "A");
+    }
+    @Test public void testLazy()
+    {
+        Result test = new Result();
+        ImagePlus stack = createTheStack();
+        test.M_options = new ResultOptions();
+        test.M_options.real = true;
+        test.M_options.lazy = true;
+        ArrayList<Integer> ts = new ArrayList<>();
+        ts.add(1); ts.add(3);
+        ArrayList<DistanceUnitValue> zs = new ArrayList<>();
+        zs.add(unit0); zs.add(unit1);
+
+        test.processHologramParam(stack);
+        test.processDimensionsParam(unit2, unit3);
+        test.processTsParam(ts);
+        test.processZsParam(zs);
+        test.processBeginning();
+        assertTrue(test.isLazy());
+        int[] count = {0};
+        test.processLazy((t, z) -> {
+            ++count[0];
+            double[][] real = {{t * 10 + z.value(), 0}, {0, 0}};
+            double[][] imag = {{0, 0}, {0, 0}};
+            return new ReconstructionFieldImpl(real, imag);
+        });
+        // Should be ignored, because the slices are made on demand
+        test.processPropagatedField(null, 1, unit0);
+        test.almostProcessEnding();
+
+        ImagePlus imp = test.M_realImp;
+        ImageStack s = imp.getStack();
+        assertEquals(s.getSize(), 4);
+        int real31_index = imp.getStackIndex(1, 2, 2);
+        assertEquals(s.getProcessor(real31_index).getf(0, 0), 31);
+        assertEquals(s.getSliceLabel(real31_index), "A, z = 1.000");
+        int computed = count[0];
+        s.getProcessor(real31_index);
+        assertEquals(count[0], computed, "Slices should be cached.");
+        int real10_index = imp.getStackIndex(1, 1, 1);
+        assertEquals(s.getProcessor(real10_index).getf(0, 0), 10);
+    }
+    // First scaling should use the first slice even if another slice is looked
+    // at first
+    @Test public void testLazyFirst()
+    {
+        Result test = new Result();
+        test.M_options = new ResultOptions();
+        test.M_options.real = true;
+        test.M_options.lazy = true;
+        test.M_options.type = ResultOptions.Type.Type8Bit;
+        test.M_options.scaling = ResultOptions.Scaling.First;
+        ArrayList<Integer> ts = new ArrayList<>();
+        ts.add(1); ts.add(3);
+        ArrayList<DistanceUnitValue> zs = new ArrayList<>();
+        zs.add(unit0); zs.add(unit1);
+
+        test.processHologramParam(createTheStack());
+        test.processDimensionsParam(unit2, unit3);
+        test.processTsParam(ts);
+        test.processZsParam(zs);
+        test.processBeginning();
+        test.processLazy((t, z) -> {
+            double[][] real = {{t * 10 + z.value(), 0}, {0, 0}};
+            double[][] imag = {{0, 0}, {0, 0}};
+            return new ReconstructionFieldImpl(real, imag);
+        });
+        test.almostProcessEnding();
+
+        ImagePlus imp = test.M_realImp;
+        ImageStack s = imp.getStack();
+        // 31 is past the range of the first slice, 0 to 10
+        assertEquals(255, s.getProcessor(imp.getStackIndex(1, 2, 2)).get(0, 0));
+        assertEquals(255, s.getProcessor(imp.getStackIndex(1, 1, 1)).get(0, 0));
+        assertEquals(0, s.getProcessor(imp.getStackIndex(1, 1, 1)).get(1, 1));
+    }
+    @Test public void testLazyProjection()
+    {
+        Result test = new Result();
+        new Context(UIService.class).inject(test);
+        test.M_options = new ResultOptions();
+        test.M_options.real = true;
+        test.M_options.lazy = true;
+        test.M_options.projection = true;
+        ArrayList<Integer> ts = new ArrayList<>();
+        ts.add(1);
+        ArrayList<DistanceUnitValue> zs = new ArrayList<>();
+        zs.add(unit0);
+
+        test.processHologramParam(createTheStack());
+        test.processDimensionsParam(unit2, unit3);
+        test.processTsParam(ts);
+        test.processZsParam(zs);
+        test.processBeginning();
+        assertTrue(test.hasError(), "Lazy results can't have projections.");
+    }
     @Test public void testSaveToFileZT() throws java.io.IOException
     {
         String dir = "./reconstructionResultSandbox";
@@ -443,6 +675,160 @@ public class ResultTest {
         }
     }
 
+    @Test public void testRawComplex() throws java.io.IOException
+    {
+        String dir = "./reconstructionResultSandbox";
+        try {
+            Result test = new Result();
+            ImagePlus stack = createTheStack();
+            test.M_options = new ResultOptions();
+            test.M_options.rawComplex = ResultOptions.RawComplex.Float32;
+            test.M_options.saveToFile = true;
+            test.M_options.saveDirectory = dir;
+            ArrayList<Integer> ts = new ArrayList<>();
+            ts.add(1); ts.add(3);
+            ArrayList<DistanceUnitValue> zs = new ArrayList<>();
+            zs.add(unit0); zs.add(unit1);
+
+            test.processBeforeParam();
+            test.processHologramParam(stack);
+            test.processDimensionsParam(unit2, unit3);
+            test.processTsParam(ts);
+            test.processZsParam(zs);
+            test.processBeginning();
+
+            double[][] real = {{0, 0}, {0, 0}};
+            double[][] imag = {{0, 0}, {0, 0}};
+            ReconstructionField field = new ReconstructionFieldImpl(real, imag);
+            field.field().getField()[0][1] = 3;
+            test.processPropagatedField(field, 3, unit1);
+            field.field().getField()[0][1] = 0;
+            field.field().getField()[1][2] = 2;
+            test.processPropagatedField(field, 1, unit0);
+            test.almostProcessEnding();
+
+            try (RawComplexReader reader = new RawComplexReader(
+                    Paths.get(dir, "Complex.raw"))) {
+                assertEquals(2, reader.ts().length);
+                assertEquals(1e6, reader.zs()[1]);
+                assertEquals(2, reader.field(0, 0)[1][2]);
+                assertEquals(0, reader.field(0, 0)[0][1]);
+                assertEquals(3, reader.field(1, 1)[0][1]);
+                // Never written
+                assertEquals(0, reader.field(0, 1)[1][2]);
+            }
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+
+    @Test public void testSaveToFileCompressed() throws java.io.IOException
+    {
+        String dir = "./reconstructionResultSandbox";
+        try {
+            for (ResultOptions.DirStructure structure
+                    : new ResultOptions.DirStructure[]{
+                        ResultOptions.DirStructure.ZT,
+                        ResultOptions.DirStructure.T}) {
+                Result test = new Result();
+                ImagePlus stack = createTheStack();
+                test.M_options = new ResultOptions();
+                test.M_options.dirStructure = structure;
+                test.M_options.real = true;
+                test.M_options.compress = true;
+                test.M_options.saveToFile = true;
+                test.M_options.saveDirectory = dir;
+                ArrayList<Integer> ts = new ArrayList<>();
+                ts.add(1);
+                ArrayList<DistanceUnitValue> zs = new ArrayList<>();
+                zs.add(unit0); zs.add(unit1);
+
+                test.processBeforeParam();
+                test.processHologramParam(stack);
+                test.processDimensionsParam(unit2, unit3);
+                test.processTsParam(ts);
+                test.processZsParam(zs);
+                test.processBeginning();
+
+                double[][] real = {{0, 0}, {0, 0}};
+                double[][] imag = {{0, 0}, {0, 0}};
+                ReconstructionField field
+                    = new ReconstructionFieldImpl(real, imag);
+                field.field().getField()[1][2] = 4;
+                test.processPropagatedField(field, 1, unit0);
+                field.field().getField()[1][2] = 5;
+                test.processPropagatedField(field, 1, unit1);
+                test.almostProcessEnding();
+
+                if (structure == ResultOptions.DirStructure.ZT) {
+                    ImagePlus imp = IJ.openImage(Paths.get(dir, "Real",
+                        "1.000", "00001.tif").toString());
+                    assertEquals(5, imp.getProcessor().getf(1, 1));
+                }
+                else {
+                    ImageStack result = IJ.openImage(Paths.get(dir, "Real",
+                        "00001.tif").toString()).getStack();
+                    assertEquals(2, result.getSize());
+                    assertEquals(4, result.getProcessor(1).getf(1, 1));
+                    assertEquals(5, result.getProcessor(2).getf(1, 1));
+                }
+                FileUtils.deleteDirectory(new File(dir));
+            }
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+    @Test public void testSaveToFileChunked() throws java.io.IOException
+    {
+        String dir = "./reconstructionResultSandbox";
+        try {
+            Result test = new Result();
+            ImagePlus stack = createTheStack();
+            test.M_options = new ResultOptions();
+            test.M_options.dirStructure = ResultOptions.DirStructure.Chunked;
+            test.M_options.real = true;
+            test.M_options.compress = true;
+            test.M_options.saveToFile = true;
+            test.M_options.saveDirectory = dir;
+            ArrayList<Integer> ts = new ArrayList<>();
+            ts.add(1); ts.add(3);
+            ArrayList<DistanceUnitValue> zs = new ArrayList<>();
+            zs.add(unit0); zs.add(unit1);
+
+            test.processBeforeParam();
+            test.processHologramParam(stack);
+            test.processDimensionsParam(unit2, unit3);
+            test.processTsParam(ts);
+            test.processZsParam(zs);
+            test.processBeginning();
+
+            double[][] real = {{0, 0}, {0, 0}};
+            double[][] imag = {{0, 0}, {0, 0}};
+            ReconstructionField field = new ReconstructionFieldImpl(real, imag);
+            test.processPropagatedField(field, 1, unit0);
+            field.field().getField()[0][0] = 1;
+            test.processPropagatedField(field, 1, unit1);
+            field.field().getField()[0][0] = 2;
+            test.processPropagatedField(field, 3, unit0);
+            field.field().getField()[0][0] = 3;
+            test.processPropagatedField(field, 3, unit1);
+            test.almostProcessEnding();
+
+            ChunkedReader reader = new ChunkedReader(Paths.get(dir, "Real"));
+            assertEquals(2, reader.zSize());
+            assertEquals(2, reader.tSize());
+            assertEquals(0, reader.read(0, 0, 0, 0, 2, 2).getf(0, 0));
+            assertEquals(1, reader.read(0, 1, 0, 0, 2, 2).getf(0, 0));
+            assertEquals(2, reader.read(1, 0, 0, 0, 2, 2).getf(0, 0));
+            assertEquals(3, reader.read(1, 1, 0, 0, 1, 1).getf(0, 0));
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+
     private static ImagePlus createTheStack()
     {
         ImageStack stack = new ImageStack(2, 2);
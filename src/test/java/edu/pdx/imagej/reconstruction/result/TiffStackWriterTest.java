@@ -0,0 +1,138 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.io.File;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.measure.Calibration;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ShortProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class TiffStackWriterTest {
+    @Test public void testOutOfOrder() throws java.io.IOException
+    {
+        String dir = "./reconstructionTiffSandbox";
+        try {
+            new File(dir).mkdirs();
+            String path = Paths.get(dir, "a.tif").toString();
+            Calibration cal = new Calibration();
+            cal.pixelWidth = 0.5;
+            cal.pixelHeight = 0.25;
+            cal.setUnit("cm");
+            TiffStackWriter test = new TiffStackWriter(Paths.get(path), 3, 2,
+                16, new String[]{"a", "b", "c"}, cal);
+            test.writeSlice(2, new ShortProcessor(3, 2,
+                new short[]{1, 2, 3, 4, 5, 6}, null));
+            test.writeSlice(0, new ShortProcessor(3, 2,
+                new short[]{7, 8, 9, 10, 11, 12}, null));
+            test.writeSlice(1, new ShortProcessor(3, 2,
+                new short[]{13, 14, 15, 16, 17, 18}, null));
+            test.close();
+
+            ImagePlus imp = IJ.openImage(path);
+            ImageStack stack = imp.getStack();
+            assertEquals(3, stack.getSize());
+            assertEquals(16, imp.getBitDepth());
+            assertEquals(7, stack.getProcessor(1).get(0, 0));
+            assertEquals(18, stack.getProcessor(2).get(2, 1));
+            assertEquals(4, stack.getProcessor(3).get(0, 1));
+            assertEquals("a", stack.getSliceLabel(1));
+            assertEquals("c", stack.getSliceLabel(3));
+            assertEquals(0.5, imp.getCalibration().pixelWidth, 1e-6);
+            assertEquals(0.25, imp.getCalibration().pixelHeight, 1e-6);
+            assertEquals("cm", imp.getCalibration().getUnit());
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+    @Test public void testCompressed() throws java.io.IOException
+    {
+        String dir = "./reconstructionTiffSandbox";
+        try {
+            new File(dir).mkdirs();
+            String path = Paths.get(dir, "a.tif").toString();
+            // Tall enough to need several strips
+            final int width = 300;
+            final int height = 400;
+            TiffStackWriter test = new TiffStackWriter(Paths.get(path), width,
+                height, 32, new String[]{"a", "b", "c"}, null, true);
+            for (int i = 2; i >= 0; --i) {
+                float[] pixels = new float[width * height];
+                for (int j = 0; j < pixels.length; ++j) {
+                    pixels[j] = (j % width) * 0.5f + i;
+                }
+                test.writeSlice(i, new FloatProcessor(width, height, pixels));
+            }
+            test.close();
+            assertTrue(new File(path).length() < width * height * 4);
+
+            ImagePlus imp = IJ.openImage(path);
+            ImageStack stack = imp.getStack();
+            assertEquals(3, stack.getSize());
+            assertEquals(32, imp.getBitDepth());
+            assertEquals(0, stack.getProcessor(1).getf(0, 0));
+            assertEquals(1 + 299 * 0.5f,
+                         stack.getProcessor(2).getf(299, 399));
+            assertEquals(2 + 10 * 0.5f, stack.getProcessor(3).getf(10, 200));
+            // ImageJ doesn't give these slices their labels, but it reads them
+            assertEquals("b", imp.getOriginalFileInfo().sliceLabels[1]);
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+    @Test public void testCompressedNoLabels() throws java.io.IOException
+    {
+        String dir = "./reconstructionTiffSandbox";
+        try {
+            new File(dir).mkdirs();
+            String path = Paths.get(dir, "a.tif").toString();
+            Calibration cal = new Calibration();
+            cal.pixelWidth = 0.5;
+            cal.setUnit("cm");
+            TiffStackWriter test = new TiffStackWriter(Paths.get(path), 2, 2,
+                8, null, cal, true);
+            test.writeSlice(0, new ByteProcessor(2, 2,
+                new byte[]{1, 2, 3, 4}, null));
+            test.close();
+
+            ImagePlus imp = IJ.openImage(path);
+            assertEquals(1, imp.getStackSize());
+            assertEquals(8, imp.getBitDepth());
+            assertEquals(4, imp.getProcessor().get(1, 1));
+            assertEquals(0.5, imp.getCalibration().pixelWidth, 1e-6);
+        }
+        finally {
+            FileUtils.deleteDirectory(new File(dir));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/* Copyright (C) 2019 Portland State University
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of version 3 of the GNU Lesser General Public License
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * For any questions regarding the license, please contact the Free Software
+ * Foundation.  For any other questions regarding this program, please contact
+ * David Cohoe at dcohoe@pdx.edu.
+ */
+
+package edu.pdx.imagej.reconstruction.result;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+public class WriterPoolTest {
+    @Test public void testFinish() throws IOException
+    {
+        WriterPool test = new WriterPool(2, 3);
+        AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < 20; ++i) {
+            test.submit(() -> {
+                try {Thread.sleep(1);} catch (InterruptedException e) {}
+                count.incrementAndGet();
+            });
+        }
+        test.finish();
+        assertEquals(20, count.get());
+    }
+    @Test public void testFailure()
+    {
+        WriterPool test = new WriterPool(1, 1);
+        assertThrows(IOException.class, () -> {
+            test.submit(() -> {throw new IOException("Full");});
+            test.finish();
+        });
+    }
+}